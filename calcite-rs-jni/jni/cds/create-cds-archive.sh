@@ -0,0 +1,32 @@
+#!/bin/sh
+# Records the classes loaded by a training startup into an AppCDS archive, which the
+# connector's embedded JVM maps at boot when CALCITE_CDS_ARCHIVE names it (or the
+# archive is at its default location).
+#
+# Run after `mvn dependency:copy-dependencies`, with the same JDK and jar locations
+# as at runtime: a JVM only uses an archive created by the same JVM build, from a
+# class path that the runtime class path starts with. A mismatched archive is ignored.
+#
+# Usage: create-cds-archive.sh [model.json]
+set -e
+
+JNI_DIR=$(cd "$(dirname "$0")/.." && pwd)
+DEPENDENCY_FOLDER=${JAR_DEPENDENCY_FOLDER:-$JNI_DIR/target/dependency}
+CALCITE_JAR=${CALCITE_JAR:-$JNI_DIR/target/calcite-rs-jni-1.0-SNAPSHOT.jar}
+ARCHIVE=${CALCITE_CDS_ARCHIVE:-$JNI_DIR/target/calcite-rs-jni.jsa}
+MODEL=${1:-$JNI_DIR/cds/training-model.json}
+
+# The jars must be listed in the order jvm.rs lists them: sorted, then the connector jar.
+CLASS_PATH=$(printf '%s\n' "$DEPENDENCY_FOLDER"/*.jar | LC_ALL=C sort | tr '\n' ':')$CALCITE_JAR
+
+rm -f "$ARCHIVE"
+java -XX:ArchiveClassesAtExit="$ARCHIVE" \
+  --add-opens=java.base/java.nio=org.apache.arrow.memory.core,ALL-UNNAMED \
+  -Dotel.java.global-autoconfigure.enabled=true \
+  -Dotel.traces.exporter=none -Dotel.metrics.exporter=none -Dotel.logs.exporter=none \
+  -Dlog4j.configurationFile=classpath:log4j2-config.xml \
+  -Dndc.calcite.metadataSnapshot=false \
+  -cp "$CLASS_PATH" \
+  com.hasura.CdsTraining "$MODEL"
+
+echo "Wrote $ARCHIVE"
@@ -0,0 +1,199 @@
+package com.hasura;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongGauge;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+
+/**
+ * A pool of Calcite connections built from the same model, so that queries from
+ * the connector can run in parallel instead of sharing one connection.
+ * <p>
+ * Every pooled connection carries its own {@link StatementCache}. Plans are shared
+ * between them through the {@link PlanCache}. The pool is configured with system
+ * properties:
+ * <ul>
+ *     <li>{@code ndc.calcite.pool.minIdle} - connections kept open when idle (default 1)</li>
+ *     <li>{@code ndc.calcite.pool.maxTotal} - maximum open connections (default: number of processors)</li>
+ *     <li>{@code ndc.calcite.pool.maxWaitMillis} - how long a borrow waits for a free connection (default 30000)</li>
+ *     <li>{@code ndc.calcite.pool.idleEvictionMillis} - idle time after which surplus connections are closed (default 300000)</li>
+ * </ul>
+ */
+class CalciteConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(CalciteConnectionPool.class);
+    private static final Meter meter = GlobalOpenTelemetry.get().getMeter("calcite-driver");
+    private static final LongHistogram borrowWait = meter.histogramBuilder("calcite.connection_pool.borrow_wait")
+            .setDescription("Time spent waiting for a pooled Calcite connection")
+            .setUnit("ms")
+            .ofLongs()
+            .build();
+    private static final LongCounter borrowTimeouts = meter.counterBuilder("calcite.connection_pool.borrow_timeouts")
+            .setDescription("Borrows that timed out waiting for a pooled Calcite connection")
+            .build();
+    private static final AttributeKey<String> STATE = AttributeKey.stringKey("state");
+
+    /**
+     * A pooled Calcite connection together with its statement cache.
+     */
+    static class PooledConnection {
+        final Connection connection;
+        final StatementCache statementCache;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statementCache = new StatementCache(connection);
+        }
+    }
+
+    private final GenericObjectPool<PooledConnection> pool;
+    private final ObservableLongGauge sizeGauge;
+
+    /**
+     * Creates a pool whose connections are opened by the given factory.
+     *
+     * @param connectionFactory Opens a new Calcite connection for the model.
+     */
+    CalciteConnectionPool(Callable<Connection> connectionFactory) {
+        GenericObjectPoolConfig<PooledConnection> config = new GenericObjectPoolConfig<>();
+        int maxTotal = Integer.getInteger("ndc.calcite.pool.maxTotal", Runtime.getRuntime().availableProcessors());
+        config.setMaxTotal(maxTotal);
+        config.setMaxIdle(maxTotal);
+        config.setMinIdle(Math.min(maxTotal, Integer.getInteger("ndc.calcite.pool.minIdle", 1)));
+        config.setMaxWait(Duration.ofMillis(Long.getLong("ndc.calcite.pool.maxWaitMillis", 30000L)));
+        config.setMinEvictableIdleTime(Duration.ofMillis(Long.getLong("ndc.calcite.pool.idleEvictionMillis", 300000L)));
+        config.setTimeBetweenEvictionRuns(Duration.ofSeconds(30));
+        config.setTestOnBorrow(true);
+        config.setJmxEnabled(false);
+        this.pool = new GenericObjectPool<>(new Factory(connectionFactory), config);
+        this.sizeGauge = meter.gaugeBuilder("calcite.connection_pool.connections")
+                .setDescription("Pooled Calcite connections by state")
+                .ofLongs()
+                .buildWithCallback(measurement -> {
+                    measurement.record(pool.getNumActive(), Attributes.of(STATE, "active"));
+                    measurement.record(pool.getNumIdle(), Attributes.of(STATE, "idle"));
+                });
+    }
+
+    /**
+     * Opens connections until the configured minimum number of idle connections is reached.
+     */
+    void prepare() throws SQLException {
+        try {
+            pool.preparePool();
+        } catch (Exception e) {
+            throw new SQLException("Failed to open pooled Calcite connections", e);
+        }
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured time for one to become free.
+     *
+     * @return A connection that must be handed back with {@link #release(PooledConnection)}.
+     * @throws SQLException If no connection became available in time or one could not be opened.
+     */
+    PooledConnection borrow() throws SQLException {
+        return borrow(pool.getMaxWaitDuration().toMillis());
+    }
+
+    /**
+     * Borrows a connection, waiting up to the given time for one to become free.
+     *
+     * @param maxWaitMillis How long to wait; a negative value waits until a connection is free.
+     * @return A connection that must be handed back with {@link #release(PooledConnection)}.
+     * @throws SQLException If no connection became available in time or one could not be opened.
+     */
+    PooledConnection borrow(long maxWaitMillis) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return pool.borrowObject(maxWaitMillis);
+        } catch (NoSuchElementException e) {
+            borrowTimeouts.add(1);
+            throw new SQLException("Timed out waiting for a pooled Calcite connection", e);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Failed to open a pooled Calcite connection", e);
+        } finally {
+            borrowWait.record((System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * @return How many connections can be borrowed right now without waiting for one to be handed back.
+     */
+    int available() {
+        int maxTotal = pool.getMaxTotal();
+        return maxTotal < 0 ? Integer.MAX_VALUE : Math.max(0, maxTotal - pool.getNumActive());
+    }
+
+    /**
+     * Hands a borrowed connection back to the pool.
+     *
+     * @param pooled The connection returned by {@link #borrow()}.
+     */
+    void release(PooledConnection pooled) {
+        pool.returnObject(pooled);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+        sizeGauge.close();
+    }
+
+    private static class Factory extends BasePooledObjectFactory<PooledConnection> {
+        private final Callable<Connection> connectionFactory;
+
+        Factory(Callable<Connection> connectionFactory) {
+            this.connectionFactory = connectionFactory;
+        }
+
+        @Override
+        public PooledConnection create() throws Exception {
+            return new PooledConnection(connectionFactory.call());
+        }
+
+        @Override
+        public PooledObject<PooledConnection> wrap(PooledConnection pooled) {
+            return new DefaultPooledObject<>(pooled);
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<PooledConnection> p) {
+            try {
+                return !p.getObject().connection.isClosed();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void destroyObject(PooledObject<PooledConnection> p) {
+            PooledConnection pooled = p.getObject();
+            pooled.statementCache.close();
+            PlanCache.release(pooled.connection);
+            try {
+                pooled.connection.close();
+            } catch (SQLException e) {
+                logger.warn("Failed to close pooled Calcite connection: " + e);
+            }
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package com.hasura;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
 import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
 import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.trace.*;
 import io.opentelemetry.context.Context;
+import org.apache.arrow.c.ArrowArrayStream;
+import org.apache.arrow.c.Data;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
 import org.apache.calcite.adapter.jdbc.JdbcTable;
-import org.apache.calcite.avatica.util.ArrayImpl;
 import org.apache.calcite.jdbc.CalciteConnection;
 import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.jdbc.Driver;
 import org.apache.calcite.schema.Schema;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -18,11 +24,12 @@ import org.yaml.snakeyaml.Yaml;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 import java.io.StringWriter;
@@ -31,7 +38,20 @@ import java.util.ArrayList;
 import java.util.List;
 import java.sql.*;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 class ExportedKey {
     String pkTableCatalog;
@@ -121,14 +141,49 @@ public class CalciteQuery {
     private static final OpenTelemetry openTelemetry = GlobalOpenTelemetry.get();
     private static final Tracer tracer = openTelemetry.getTracer("calcite-driver");
     private static final Gson gson = new Gson();
+    private static final DirectBufferPool bufferPool = new DirectBufferPool();
+    private static final BufferAllocator arrowAllocator = new RootAllocator();
+    private static final ExecutorService queryExecutor = QueryExecutors.newTaskExecutor("calcite-query");
+    private static final boolean BULK_INTROSPECTION =
+            Boolean.parseBoolean(System.getProperty("ndc.calcite.introspection.bulk", "true"));
+    private static final boolean METADATA_SNAPSHOT =
+            Boolean.parseBoolean(System.getProperty("ndc.calcite.metadataSnapshot", "false"));
+    private static final int INTROSPECTION_PARALLELISM = Integer.getInteger("ndc.calcite.introspection.parallelism", 8);
+    private static final ScheduledExecutorService handleReaper =
+            Executors.newSingleThreadScheduledExecutor(QueryExecutors.daemonThreadFactory("calcite-handle-reaper"));
+    // Held weakly, so that the reaper does not keep instances and their pools reachable.
+    private static final Set<CalciteQuery> instances = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private static final long CURSOR_IDLE_TIMEOUT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("ndc.calcite.cursor.idleTimeoutMillis", 300000L));
+    private static final long QUERY_HANDLE_TIMEOUT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("ndc.calcite.query.handleTimeoutMillis", 300000L));
 
     public static final Set<String> DATE_HANDLING_EXCEPTION = new HashSet<>(Arrays.asList(new String[]{"com.databricks.client.jdbc.Driver"}));
 
     Connection connection;
+    CalciteConnectionPool connectionPool;
+    // Opens a new Calcite connection for the current model
+    private Callable<Connection> connectionFactory;
     CalciteSchema rootSchema;
     boolean sqliteFlag;
     HashMap<String, Object> model;
+    String modelVersion;
+    volatile String metadataVersion;
+    private final AtomicLong nextQueryHandle = new AtomicLong();
+    private final Map<Long, PendingQuery> pendingQueries = new ConcurrentHashMap<>();
+    private final AtomicLong nextCursorId = new AtomicLong();
+    private final Map<Long, QueryCursor> cursors = new ConcurrentHashMap<>();
+    private final AtomicBoolean revalidatingSnapshot = new AtomicBoolean();
+    private volatile CompletableFuture<Void> warmup = new CompletableFuture<>();
 
+    static {
+        long period = Math.max(1000L, TimeUnit.NANOSECONDS.toMillis(Math.min(CURSOR_IDLE_TIMEOUT_NANOS, QUERY_HANDLE_TIMEOUT_NANOS)) / 4);
+        handleReaper.scheduleWithFixedDelay(CalciteQuery::reapAll, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    {
+        instances.add(this);
+    }
 
     public static void noOpMethod() {
         Span span = tracer.spanBuilder("noOpMethod").startSpan();
@@ -139,6 +194,7 @@ public class CalciteQuery {
     public void setModel(String modelPath) throws IOException {
         // Read the template file
         String content = new String(Files.readAllBytes(Paths.get(modelPath)));
+        modelVersion = Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
         // Determine if the file is JSON or YAML
         boolean isJson = modelPath.endsWith(".json");
 
@@ -154,6 +210,55 @@ public class CalciteQuery {
         model = (HashMap<String, Object>) data;
     }
 
+    /**
+     * Sets the model from its parsed form, including the keys only the connector reads.
+     */
+    private void setModel(Object data) throws IOException {
+        String content = new ObjectMapper().writeValueAsString(data);
+        modelVersion = Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+        model = (HashMap<String, Object>) data;
+    }
+
+    /**
+     * @return The keys of a schema in the model, together with those of its operand, where
+     * a custom schema has them; empty if the model has no such schema.
+     */
+    private Map<String, Object> getModelSchema(String schemaName) {
+        Map<String, Object> keys = new HashMap<>();
+        Object schemas = model == null ? null : model.get("schemas");
+        if (schemas instanceof List) {
+            for (Object schema : (List<?>) schemas) {
+                if (schema instanceof Map && Objects.equals(((Map<?, ?>) schema).get("name"), schemaName)) {
+                    if (((Map<?, ?>) schema).get("operand") instanceof Map) {
+                        ((Map<?, ?>) ((Map<?, ?>) schema).get("operand")).forEach((key, value) -> keys.put(String.valueOf(key), value));
+                    }
+                    ((Map<?, ?>) schema).forEach((key, value) -> keys.put(String.valueOf(key), value));
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return The {@code typeMappings} given for a schema in the model, if any.
+     */
+    private Map<String, String> getTypeMappings(String schemaName) {
+        Object schemas = model == null ? null : model.get("schemas");
+        if (!(schemas instanceof List)) {
+            return null;
+        }
+        for (Object schema : (List<?>) schemas) {
+            if (schema instanceof Map && Objects.equals(((Map<?, ?>) schema).get("name"), schemaName)
+                    && ((Map<?, ?>) schema).get("typeMappings") instanceof Map) {
+                Map<String, String> mappings = new HashMap<>();
+                ((Map<?, ?>) ((Map<?, ?>) schema).get("typeMappings"))
+                        .forEach((typeName, type) -> mappings.put(String.valueOf(typeName), String.valueOf(type)));
+                return mappings;
+            }
+        }
+        return null;
+    }
+
     public Boolean handleDates() {
         ArrayList<HashMap<String, Object>> schemas = (ArrayList<HashMap<String, Object>>) model.get("schemas");
         if (schemas != null && schemas.size() > 0) {
@@ -173,18 +278,34 @@ public class CalciteQuery {
         CalciteQuery.setClassLoader();
         Span span = tracer.spanBuilder("createCalciteConnection").startSpan();
         span.setAttribute("modelPath", modelPath);
+        warmup = new CompletableFuture<>();
         Properties info = new Properties();
-        info.setProperty("model", ConfigPreprocessor.preprocessConfig(modelPath));
-        setModel(info.getProperty("model"));
+        Object resolvedModel = ConfigPreprocessor.resolveConfig(modelPath);
+        info.setProperty("model", ConfigPreprocessor.inlineModel(resolvedModel));
+        setModel(resolvedModel);
+        span.setAttribute("modelVersion", modelVersion);
         info.setProperty("caseSensitive", "true");
         info.setProperty("unquotedCasing", "UNCHANGED");
         info.setProperty("quotedCasing", "UNCHANGED");
         try {
 //            Class.forName("com.simba.googlebigquery.jdbc42.Driver");
-            Class.forName("org.apache.calcite.jdbc.Driver");
 //            Class.forName("org.apache.parquet.hadoop.api.ReadSupport");
-            connection = DriverManager.getConnection("jdbc:calcite:", info);
+            // Plans made on the previous connections are dropped with them; other
+            // instances built from the same model keep theirs.
+            if (connectionPool != null) {
+                connectionPool.close();
+            }
+            if (connection != null) {
+                PlanCache.release(connection);
+            }
+            // Plans are shared with every other connection built from the same model version.
+            Driver driver = new Driver().withPrepareFactory(PlanCache.prepareFactory(modelVersion));
+            connectionFactory = () -> driver.connect("jdbc:calcite:", info);
+            connection = connectionFactory.call();
+            connectionPool = new CalciteConnectionPool(connectionFactory);
+            connectionPool.prepare();
             rootSchema = connection.unwrap(CalciteConnection.class).getRootSchema().unwrap(CalciteSchema.class);
+            warmup = startWarmup();
             span.setStatus(StatusCode.OK);
         } catch (Exception e) {
             span.setAttribute("error", e.toString());
@@ -198,208 +319,572 @@ public class CalciteQuery {
         return connection;
     }
 
-    private Collection<TableMetadata> getTables() {
+    /**
+     * Warms up a new connection in the background: opens a connection to every JDBC
+     * source and prepares each SQL template listed under {@code warmup} in the model,
+     * filling the statement and plan caches before the first real queries arrive. The
+     * templates are written like the connector's queries, with marked up values.
+     * Failures are logged and do not prevent readiness.
+     *
+     * @return A future completed once every warm-up task has finished.
+     */
+    private CompletableFuture<Void> startWarmup() {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (CalciteSchema subSchema : rootSchema.getSubSchemaMap().values()) {
+            if (subSchema.schema instanceof JdbcSchema) {
+                JdbcSchema jdbcSchema = (JdbcSchema) subSchema.schema;
+                tasks.add(CompletableFuture.runAsync(() -> warmUpSource(subSchema.name, jdbcSchema), queryExecutor));
+            }
+        }
+        for (String template : getWarmupQueries()) {
+            tasks.add(CompletableFuture.runAsync(() -> warmUpQuery(template), queryExecutor));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+    }
+
+    private List<String> getWarmupQueries() {
+        Object queries = model == null ? null : model.get("warmup");
+        List<String> templates = new ArrayList<>();
+        if (queries instanceof List) {
+            for (Object query : (List<?>) queries) {
+                if (query instanceof String) {
+                    templates.add((String) query);
+                }
+            }
+        }
+        return templates;
+    }
+
+    private void warmUpSource(String schemaName, JdbcSchema schema) {
+        try (Connection ignored = schema.getDataSource().getConnection()) {
+            logger.debug("Opened source connection for schema " + schemaName);
+        } catch (Exception e) {
+            logger.warn("Failed to open source connection for schema " + schemaName + " during warm-up: " + e);
+        }
+    }
+
+    private void warmUpQuery(String template) {
+        Tracer tracer = openTelemetry.getTracer("calcite-driver");
+        Span span = tracer.spanBuilder("warmUpQuery").startSpan();
+        span.setAttribute("query", template);
+        CalciteConnectionPool.PooledConnection pooled = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            pooled = connectionPool.borrow();
+            preparedStatement = StatementPreparer.prepare(template, pooled.statementCache, handleDates());
+            span.setStatus(StatusCode.OK);
+        } catch (Exception e) {
+            logger.warn("Failed to prepare warm-up query: " + e);
+            span.setAttribute("Error", e.toString());
+            span.setStatus(StatusCode.ERROR);
+        } finally {
+            if (preparedStatement != null) {
+                pooled.statementCache.release(preparedStatement);
+            }
+            if (pooled != null) {
+                connectionPool.release(pooled);
+            }
+            span.end();
+        }
+    }
+
+    /**
+     * @return Whether a connection has been created and its warm-up has finished.
+     */
+    public boolean isReady() {
+        return warmup.isDone();
+    }
+
+    /**
+     * Waits for the warm-up of the connection to finish.
+     *
+     * @param timeoutMillis How long to wait; a negative value waits indefinitely.
+     * @return Whether the connection is ready.
+     */
+    public boolean awaitReady(long timeoutMillis) {
+        try {
+            if (timeoutMillis < 0) {
+                warmup.get();
+            } else {
+                warmup.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Introspects the selected tables of every sub-schema.
+     *
+     * @param signed Whether to record the signature of each sub-schema, see {@link #getSchemaSignature}.
+     */
+    private List<MetadataSnapshot.SchemaEntry> getTables(TableFilter filter, boolean signed) {
         Tracer tracer = openTelemetry.getTracer("calcite-driver");
         Span span = tracer.spanBuilder("getTables").startSpan();
         try {
             DatabaseMetaData metaData = connection.getMetaData();
+            String[] tableTypeArray = getTableTypes(metaData);
+            List<String[]> lanes = getSchemaLanes(metaData);
+            updateSqliteFlag(lanes);
+            lanes.removeIf(lane -> !filter.matchesSchema(lane[1]));
+            List<MetadataSnapshot.SchemaEntry> list = runLanes(lanes, (catalog, schemaName) -> {
+                // Taken first, so that a change made while introspecting shows up at the next check.
+                String signature = signed ? getSchemaSignature(catalog, schemaName, tableTypeArray) : null;
+                return new MetadataSnapshot.SchemaEntry(catalog, schemaName,
+                        getSchemaTables(catalog, schemaName, tableTypeArray, filter), signature);
+            }, span);
+            int count = 0;
+            for (MetadataSnapshot.SchemaEntry entry : list) {
+                count += entry.tables.size();
+            }
+            span.setAttribute("Number of Tables", count);
+            span.setStatus(StatusCode.OK);
+            return list;
+        } catch (ExecutionException e) {
+            span.setStatus(StatusCode.ERROR);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (SQLException | InterruptedException e) {
+            span.setStatus(StatusCode.ERROR);
+            throw new RuntimeException(e);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Lists the sub-schemas of every catalog as {@code {catalog, schema}} pairs.
+     */
+    private static List<String[]> getSchemaLanes(DatabaseMetaData metaData) throws SQLException {
+        List<String[]> lanes = new ArrayList<>();
+        try (ResultSet catalogs = metaData.getCatalogs()) {
+            while (catalogs.next()) {
+                String catalog = catalogs.getString("TABLE_CAT");
+                try (ResultSet schemas = metaData.getSchemas()) {
+                    while (schemas.next()) {
+                        lanes.add(new String[]{catalog, schemas.getString(1)});
+                    }
+                } catch (Throwable e) {
+                    System.err.println(e.toString());
+                }
+            }
+        }
+        return lanes;
+    }
+
+    private void updateSqliteFlag(List<String[]> lanes) {
+        boolean sqlite = false;
+        for (String[] lane : lanes) {
+            CalciteSchema schemaPlus = rootSchema.getSubSchema(lane[1], true);
+            if (schemaPlus != null && schemaPlus.schema instanceof JdbcSchema) {
+                sqlite |= ((JdbcSchema) schemaPlus.schema).dialect instanceof SQLiteSqlDialect;
+            }
+        }
+        sqliteFlag = sqlite;
+    }
+
+    /**
+     * Work done for one sub-schema during introspection.
+     */
+    private interface LaneTask<T> {
+        T run(String catalog, String schemaName) throws Exception;
+    }
+
+    /**
+     * Runs a task for every sub-schema on a bounded executor and returns the results in lane order.
+     * <p>
+     * Every running lane holds a pooled connection, so no more lanes run at a time than the
+     * pool has free connections, less one kept for queries. Lanes then never wait out the
+     * pool's borrow timeout on each other, and introspection does not starve queries.
+     */
+    private <T> List<T> runLanes(List<String[]> lanes, LaneTask<T> task, Span span) throws InterruptedException, ExecutionException {
+        int parallelism = Math.max(1, Math.min(Math.min(lanes.size(), INTROSPECTION_PARALLELISM), connectionPool.available() - 1));
+        span.setAttribute("Number of Schemas", lanes.size());
+        span.setAttribute("Parallelism", parallelism);
+        ExecutorService executor = QueryExecutors.newFixedExecutor("calcite-introspection", parallelism);
+        try {
+            List<Future<T>> pending = new ArrayList<>(lanes.size());
+            for (String[] lane : lanes) {
+                pending.add(executor.submit(() -> task.run(lane[0], lane[1])));
+            }
+            List<T> results = new ArrayList<>(lanes.size());
+            for (Future<T> future : pending) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Brings the introspection of every sub-schema up to date. Only sub-schemas whose
+     * signature, covering their tables, columns and keys, differs from the one recorded
+     * in an earlier introspection are introspected again; the others keep their entry.
+     * <p>
+     * Calcite keeps the tables of a JDBC schema as it first listed them, for the life of
+     * the connection, so changed sub-schemas are introspected on a new Calcite connection
+     * rather than a pooled one.
+     *
+     * @param entries The earlier introspection.
+     * @return The entries in lane order, the unchanged ones being the same instances as in {@code entries}.
+     */
+    private List<MetadataSnapshot.SchemaEntry> refreshTables(List<MetadataSnapshot.SchemaEntry> entries, Span span)
+            throws SQLException, InterruptedException, ExecutionException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String[] tableTypeArray = getTableTypes(metaData);
+        List<String[]> lanes = getSchemaLanes(metaData);
+        updateSqliteFlag(lanes);
+        Map<List<String>, MetadataSnapshot.SchemaEntry> previous = new HashMap<>();
+        for (MetadataSnapshot.SchemaEntry entry : entries) {
+            previous.put(Arrays.asList(entry.catalog, entry.schema), entry);
+        }
+        List<MetadataSnapshot.SchemaEntry> refreshed = runLanes(lanes, (catalog, schemaName) -> {
+            MetadataSnapshot.SchemaEntry entry = previous.get(Arrays.asList(catalog, schemaName));
+            String signature = getSchemaSignature(catalog, schemaName, tableTypeArray);
+            if (entry != null && signature != null && signature.equals(entry.signature)) {
+                return entry;
+            }
+            try (Connection fresh = connectionFactory.call()) {
+                return new MetadataSnapshot.SchemaEntry(catalog, schemaName,
+                        getSchemaTables(fresh, catalog, schemaName, tableTypeArray, TableFilter.ALL), signature);
+            }
+        }, span);
+        int changed = 0;
+        for (MetadataSnapshot.SchemaEntry entry : refreshed) {
+            if (previous.get(Arrays.asList(entry.catalog, entry.schema)) != entry) {
+                changed++;
+            }
+        }
+        span.setAttribute("Schemas changed", changed);
+        return refreshed;
+    }
+
+    /**
+     * Brings a metadata snapshot up to date in the background, see {@link #refreshTables}.
+     */
+    private void revalidateSnapshot(MetadataSnapshot snapshot, List<MetadataSnapshot.SchemaEntry> entries) {
+        Tracer tracer = openTelemetry.getTracer("calcite-driver");
+        Span span = tracer.spanBuilder("revalidateMetadataSnapshot").startSpan();
+        try {
+            List<MetadataSnapshot.SchemaEntry> refreshed = refreshTables(entries, span);
+            boolean changed = refreshed.size() != entries.size();
+            for (int i = 0; i < refreshed.size() && !changed; i++) {
+                changed = refreshed.get(i) != entries.get(i);
+            }
+            if (changed) {
+                snapshot.save(refreshed);
+                MetadataSnapshot.saveVersion(refreshed, true);
+            }
+            span.setStatus(StatusCode.OK);
+        } catch (Exception e) {
+            logger.warn("Failed to revalidate metadata snapshot: " + e);
+            span.setAttribute("Error", e.toString());
+            span.setStatus(StatusCode.ERROR);
+        } finally {
+            revalidatingSnapshot.set(false);
+            span.end();
+        }
+    }
+
+    /**
+     * Computes a signature of what introspection reads for one sub-schema: its tables, the
+     * name, type, size and nullability of their columns, and their primary and exported
+     * keys. It takes one schema-wide metadata call of each kind, without resolving types,
+     * so that a snapshot can be checked for changes without introspecting it again.
+     * <p>
+     * The metadata of a JDBC schema is read from its source, on a connection of its
+     * {@link JdbcSourcePool}, because Calcite keeps the tables it has listed once.
+     *
+     * @return The signature, or {@code null} if the source does not support schema-wide key lookups.
+     */
+    private String getSchemaSignature(String catalog, String schemaName, String[] tableTypeArray) throws SQLException {
+        CalciteSchema subSchema = rootSchema.getSubSchema(schemaName, true);
+        if (subSchema != null && subSchema.schema instanceof JdbcSchema) {
+            Map<String, Object> source = getModelSchema(schemaName);
+            try (Connection sourceConnection = ((JdbcSchema) subSchema.schema).getDataSource().getConnection()) {
+                return computeSignature(sourceConnection.getMetaData(),
+                        (String) source.get("jdbcCatalog"), (String) source.get("jdbcSchema"), null);
+            }
+        }
+        CalciteConnectionPool.PooledConnection pooled = connectionPool.borrow();
+        try {
+            return computeSignature(pooled.connection.getMetaData(), catalog, schemaName, tableTypeArray);
+        } finally {
+            connectionPool.release(pooled);
+        }
+    }
+
+    private static String computeSignature(DatabaseMetaData metaData, String catalog, String schemaName, String[] tableTypeArray) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (ResultSet tables = metaData.getTables(catalog, schemaName, null, tableTypeArray)) {
+            while (tables.next()) {
+                if (inSchema(tables, "TABLE_SCHEM", schemaName)) {
+                    rows.add(signatureRow("T", tables.getString("TABLE_NAME"), tables.getString("TABLE_TYPE"), tables.getString("REMARKS")));
+                }
+            }
+        }
+        try (ResultSet columns = metaData.getColumns(catalog, schemaName, null, null)) {
+            while (columns.next()) {
+                if (inSchema(columns, "TABLE_SCHEM", schemaName)) {
+                    rows.add(signatureRow("C", columns.getString("TABLE_NAME"), columns.getString("COLUMN_NAME"),
+                            columns.getString("TYPE_NAME"), columns.getString("DATA_TYPE"), columns.getString("COLUMN_SIZE"),
+                            columns.getString("DECIMAL_DIGITS"), columns.getString("NULLABLE"), columns.getString("REMARKS")));
+                }
+            }
+        }
+        try {
+            try (ResultSet pks = metaData.getPrimaryKeys(catalog, schemaName, null)) {
+                while (pks.next()) {
+                    if (inSchema(pks, "TABLE_SCHEM", schemaName)) {
+                        rows.add(signatureRow("P", pks.getString("TABLE_NAME"), pks.getString("COLUMN_NAME"),
+                                pks.getString("KEY_SEQ"), pks.getString("PK_NAME")));
+                    }
+                }
+            }
+            try (ResultSet eks = metaData.getExportedKeys(catalog, schemaName, null)) {
+                while (eks.next()) {
+                    if (inSchema(eks, "PKTABLE_SCHEM", schemaName)) {
+                        rows.add(signatureRow("F", gson.toJson(exportedKey(eks))));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.debug("Schema-wide key lookup is not supported for " + schemaName + ", not signing it: " + e);
+            return null;
+        }
+        Collections.sort(rows);
+        return Hashing.sha256().hashString(String.join("\n", rows), StandardCharsets.UTF_8).toString();
+    }
+
+    private static String signatureRow(String kind, String... values) {
+        return kind + "\u0000" + String.join("\u0000", Arrays.stream(values).map(String::valueOf).toArray(String[]::new));
+    }
+
+    /**
+     * Describes the sources the metadata is read from: the Calcite driver, and the product
+     * and driver versions of the database behind every JDBC sub-schema.
+     */
+    private String getSourceVersions() throws SQLException {
+        DatabaseMetaData calcite = connection.getMetaData();
+        StringBuilder versions = new StringBuilder(calcite.getDriverName()).append(' ').append(calcite.getDriverVersion());
+        for (Map.Entry<String, CalciteSchema> entry : rootSchema.getSubSchemaMap().entrySet()) {
+            if (entry.getValue().schema instanceof JdbcSchema) {
+                try (Connection source = ((JdbcSchema) entry.getValue().schema).getDataSource().getConnection()) {
+                    DatabaseMetaData metaData = source.getMetaData();
+                    versions.append('\n').append(entry.getKey()).append(": ")
+                            .append(metaData.getDatabaseProductName()).append(' ').append(metaData.getDatabaseProductVersion())
+                            .append(", ").append(metaData.getDriverName()).append(' ').append(metaData.getDriverVersion());
+                }
+            }
+        }
+        return versions.toString();
+    }
+
+    private static String[] getTableTypes(DatabaseMetaData metaData) {
+        final List<String> TABLE_TYPES = Arrays.asList("INDEX", "SEQUENCE", "SYSTEM INDEX", "SYSTEM TABLE", "SYSTEM TOAST INDEX");
+        List<String> tableTypeList = new ArrayList<>();
+        try (ResultSet tableTypes = metaData.getTableTypes()) {
+            while (tableTypes.next()) {
+                String tableType = tableTypes.getString(1);
+                if (!TABLE_TYPES.contains(tableType)) {
+                    tableTypeList.add(tableType);
+                }
+            }
+        } catch (Throwable e) {
+            logger.error(e.toString());
+            throw new RuntimeException(e);
+        }
+        tableTypeList.add("STREAM");
+        tableTypeList.add("BASE_TABLE");
+        return tableTypeList.toArray(new String[0]);
+    }
+
+    /**
+     * Introspects the selected tables of one sub-schema and their columns, on a connection
+     * borrowed from the pool, so that sub-schemas can be introspected in parallel.
+     */
+    private List<TableMetadata> getSchemaTables(String catalog, String schemaName, String[] tableTypeArray, TableFilter filter) throws SQLException {
+        CalciteConnectionPool.PooledConnection pooled = connectionPool.borrow();
+        try {
+            return getSchemaTables(pooled.connection, catalog, schemaName, tableTypeArray, filter);
+        } finally {
+            connectionPool.release(pooled);
+        }
+    }
+
+    private List<TableMetadata> getSchemaTables(Connection calciteConnection, String catalog, String schemaName, String[] tableTypeArray, TableFilter filter) throws SQLException {
+        Tracer tracer = openTelemetry.getTracer("calcite-driver");
+        Span span = tracer.spanBuilder("getSchemaTables").startSpan();
+        span.setAttribute("schema", schemaName);
+        try {
+            DatabaseMetaData metaData = calciteConnection.getMetaData();
+            CalciteSchema schemaPlus = calciteConnection.unwrap(CalciteConnection.class).getRootSchema()
+                    .unwrap(CalciteSchema.class).getSubSchema(schemaName, true);
+            assert schemaPlus != null;
+            Schema schema = schemaPlus.schema;
             List<TableMetadata> list = new ArrayList<>();
-            try (ResultSet catalogs = metaData.getCatalogs()) {
-                while (catalogs.next()) {
-                    ArrayList<String> path = new ArrayList<>();
-                    String catalog = catalogs.getString("TABLE_CAT");
-                    try (ResultSet schemas = metaData.getSchemas()) {
-                        while (schemas.next()) {
-                            String schemaName = schemas.getString(1);
-                            CalciteSchema schemaPlus = rootSchema.getSubSchema(schemaName, true);
-                            assert schemaPlus != null;
-                            Schema schema = schemaPlus.schema;
-                            DatabaseMetaData metaData1;
-
-                            if (schema instanceof JdbcSchema) {
-                                metaData1 = ((JdbcSchema) schema).getDataSource().getConnection().getMetaData();
-                            } else {
-                                metaData1 = metaData;
-                            }
-                            final List<String> TABLE_TYPES = Arrays.asList("INDEX", "SEQUENCE", "SYSTEM INDEX", "SYSTEM TABLE", "SYSTEM TOAST INDEX");
-                            List<String> tableTypeList = new ArrayList<>();
-                            try (ResultSet tableTypes = metaData.getTableTypes()) {
-                                while (tableTypes.next()) {
-                                    String tableType = tableTypes.getString(1);
-                                    if (!TABLE_TYPES.contains(tableType)) {
-                                        tableTypeList.add(tableType);
-                                    }
-                                }
-                            } catch (Throwable e) {
-                                logger.error(e.toString());
-                                throw new RuntimeException(e);
-                            }
-                            tableTypeList.add("STREAM");
-                            tableTypeList.add("BASE_TABLE");
-                            String[] tableTypeArray = tableTypeList.toArray(new String[0]);
-                            try (ResultSet tables = metaData.getTables(catalog, schemaName, null, tableTypeArray)) {
-                                while (tables.next()) {
-                                    String tableName = tables.getString("TABLE_NAME");
-                                    String remarks = tables.getString("REMARKS");
-                                    ArrayList<String> primaryKeys = new ArrayList<>();
-                                    ArrayList<ExportedKey> exportedKeys = new ArrayList<ExportedKey>();
-                                    String localCatalogName = catalog;
-                                    String localSchemaName = schemaName;
-                                    if (schema instanceof JdbcSchema) {
-                                        JdbcTable underlyingTable = (JdbcTable) ((JdbcSchema) schema).getTable(tableName);
-                                        assert underlyingTable != null;
-                                        localCatalogName = underlyingTable.jdbcCatalogName == null ? catalog : underlyingTable.jdbcCatalogName;
-                                        localSchemaName = underlyingTable.jdbcSchemaName == null ? schemaName : underlyingTable.jdbcSchemaName;
-                                    }
-                                    try (ResultSet pks = metaData1.getPrimaryKeys(localCatalogName, localSchemaName, tableName)) {
-                                        while (pks.next()) {
-                                            primaryKeys.add(pks.getString("COLUMN_NAME"));
-                                        }
-                                    }
-                                    try {
-                                        try (ResultSet eks = metaData1.getExportedKeys(localCatalogName, localSchemaName, tableName)) {
-                                            while (eks.next()) {
-                                                exportedKeys.add(
-                                                        new ExportedKey(
-                                                                eks.getString("PKTABLE_CAT"),
-                                                                eks.getString("PKTABLE_SCHEM"),
-                                                                eks.getString("PKTABLE_NAME"),
-                                                                eks.getString("PKCOLUMN_NAME"),
-                                                                eks.getString("PK_NAME"),
-                                                                eks.getString("FKTABLE_CAT"),
-                                                                eks.getString("FKTABLE_SCHEM"),
-                                                                eks.getString("FKTABLE_NAME"),
-                                                                eks.getString("FKCOLUMN_NAME"),
-                                                                eks.getString("FK_NAME")
-                                                        )
-                                                );
-                                            }
-                                        }
-                                    } catch (SQLException e) { /* ignore */ }
-                                    list.add(new TableMetadata(catalog, schemaName, tableName, remarks, primaryKeys, exportedKeys, localCatalogName, localSchemaName));
-                                }
-                            } catch (Throwable e) {
-                                span.setAttribute("Error", e.toString());
-                            }
+            // Keys are read from the source itself, on a connection handed back to its pool afterwards.
+            try (Connection sourceConnection = schema instanceof JdbcSchema ? ((JdbcSchema) schema).getDataSource().getConnection() : null) {
+                DatabaseMetaData metaData1 = sourceConnection == null ? metaData : sourceConnection.getMetaData();
+                try (ResultSet tables = metaData.getTables(catalog, schemaName, null, tableTypeArray)) {
+                    while (tables.next()) {
+                        String tableName = tables.getString("TABLE_NAME");
+                        if (!filter.matches(schemaName, tableName)) {
+                            continue;
+                        }
+                        String remarks = tables.getString("REMARKS");
+                        String localCatalogName = catalog;
+                        String localSchemaName = schemaName;
+                        if (schema instanceof JdbcSchema) {
+                            JdbcTable underlyingTable = (JdbcTable) ((JdbcSchema) schema).getTable(tableName);
+                            assert underlyingTable != null;
+                            localCatalogName = underlyingTable.jdbcCatalogName == null ? catalog : underlyingTable.jdbcCatalogName;
+                            localSchemaName = underlyingTable.jdbcSchemaName == null ? schemaName : underlyingTable.jdbcSchemaName;
                         }
-                    } catch (Throwable e) {
-                        System.err.println(e.toString());
+                        list.add(new TableMetadata(catalog, schemaName, tableName, remarks, new ArrayList<>(), new ArrayList<>(), localCatalogName, localSchemaName));
                     }
+                    for (TableMetadata table : BULK_INTROSPECTION ? getKeysInBulk(metaData1, list) : list) {
+                        getTableKeys(metaData1, table);
+                    }
+                } catch (Throwable e) {
+                    span.setAttribute("Error", e.toString());
+                }
+            }
+            TypeResolver types = TypeResolver.of(
+                    schema instanceof JdbcSchema ? ((JdbcSchema) schema).dialect : null, getTypeMappings(schemaName));
+            // A few selected tables are cheaper to look up one by one than with the whole schema.
+            if (BULK_INTROSPECTION && filter.matchesAllTables(schemaName)) {
+                Map<String, Map<String, ColumnMetadata>> columns =
+                        getSchemaColumnInfo(catalog == null ? "" : catalog, schemaName, metaData, types);
+                for (TableMetadata table : list) {
+                    table.columns = columns.getOrDefault(table.name, new HashMap<>());
+                }
+            } else {
+                for (TableMetadata table : list) {
+                    table.columns = getTableColumnInfo(table, metaData, types);
                 }
             }
             span.setAttribute("Number of Tables", list.size());
             span.setStatus(StatusCode.OK);
             return list;
-        } catch (SQLException e) {
-            span.setStatus(StatusCode.ERROR);
-            throw new RuntimeException(e);
         } finally {
             span.end();
         }
     }
 
-    private Map<String, ColumnMetadata> getTableColumnInfo(TableMetadata table) {
-        Tracer tracer = openTelemetry.getTracer("calcite-driver");
-        Span span = tracer.spanBuilder("getTables").startSpan();
-        Map<String, ColumnMetadata> columns = new HashMap<>();
-        ResultSet columnsSet;
+    private static void getTableKeys(DatabaseMetaData metaData, TableMetadata table) throws SQLException {
+        try (ResultSet pks = metaData.getPrimaryKeys(table.physicalCatalog, table.physicalSchema, table.name)) {
+            while (pks.next()) {
+                table.primaryKeys.add(pks.getString("COLUMN_NAME"));
+            }
+        }
         try {
-            DatabaseMetaData metaData = connection.getMetaData();
-            String schemaName = table.schema;
-            CalciteSchema schemaPlus = rootSchema.getSubSchema(schemaName, true);
-            Schema schema = schemaPlus.schema;
-            sqliteFlag = false;
-            if (schema instanceof JdbcSchema) {
-                sqliteFlag = ((JdbcSchema) schema).dialect instanceof SQLiteSqlDialect;
+            try (ResultSet eks = metaData.getExportedKeys(table.physicalCatalog, table.physicalSchema, table.name)) {
+                while (eks.next()) {
+                    table.exportedKeys.add(exportedKey(eks));
+                }
             }
-            columnsSet = metaData.getColumns(table.catalog, table.schema, table.name, null);
-            while (columnsSet.next()) {
-                String columnName = columnsSet.getString("COLUMN_NAME");
-                String description = columnsSet.getString("REMARKS");
-                String dataTypeName = columnsSet.getString("TYPE_NAME");
-                boolean nullable = columnsSet.getBoolean("NULLABLE");
-                Map<String, String> remapTypes = new HashMap<>();
-                remapTypes.put("CHAR", "CHAR");
-                remapTypes.put("CHAR(1)", "VARCHAR");
-                remapTypes.put("VARCHAR", "VARCHAR");
-                remapTypes.put("VARCHAR(65536)", "VARCHAR");
-                remapTypes.put("VARCHAR(65536) NOT NULL", "VARCHAR");
-                remapTypes.put("VARCHAR NOT NULL", "VARCHAR");
-                remapTypes.put("JavaType(class java.util.ArrayList)", "LIST");
-                remapTypes.put("JavaType(class org.apache.calcite.adapter.file.ComparableArrayList)", "LIST");
-                remapTypes.put("ANY ARRAY", "LIST");
-                remapTypes.put("VARCHAR NOT NULL ARRAY", "LIST");
-                remapTypes.put("JavaType(class java.util.LinkedHashMap)", "MAP");
-                remapTypes.put("JavaType(class org.apache.calcite.adapter.file.ComparableLinkedHashMap)", "MAP");
-                remapTypes.put("JavaType(class java.lang.String)", "VARCHAR");
-                remapTypes.put("JavaType(class java.lang.Integer)", "INTEGER");
-                remapTypes.put("INTEGER NOT NULL", "INTEGER");
-                remapTypes.put("INTEGER", "INTEGER");
-                remapTypes.put("MAP NOT NULL", "MAP");
-                remapTypes.put("ARRAY NOT NULL", "ARRAY");
-                remapTypes.put("JSON", "JSON");
-                remapTypes.put("JSONB", "JSON");
-                remapTypes.put("SMALLINT NOT NULL", "INTEGER");
-                remapTypes.put("SMALLINT", "INTEGER");
-                remapTypes.put("TINYINT NOT NULL", "INTEGER");
-                remapTypes.put("TINYINT", "INTEGER");
-                remapTypes.put("BIGINT NOT NULL", "INTEGER");
-                remapTypes.put("BIGINT", "INTEGER");
-                remapTypes.put("FLOAT NOT NULL", "FLOAT");
-                remapTypes.put("FLOAT", "FLOAT");
-                remapTypes.put("DOUBLE NOT NULL", "DOUBLE");
-                remapTypes.put("DOUBLE", "DOUBLE");
-                remapTypes.put("BOOLEAN NOT NULL", "BOOLEAN");
-                remapTypes.put("BOOLEAN", "BOOLEAN");
-                remapTypes.put("VARBINARY NOT NULL", "VARBINARY");
-                remapTypes.put("VARBINARY", "VARBINARY");
-                remapTypes.put("BINARY NOT NULL", "BINARY");
-                remapTypes.put("BINARY", "BINARY");
-                remapTypes.put("DATE NOT NULL", "DATE");
-                remapTypes.put("DATE", "DATE");
-                remapTypes.put("TIME(0) NOT NULL", "TIME");
-                remapTypes.put("TIME(0)", "TIME");
-                remapTypes.put("TIMESTAMP(0) NOT NULL", "TIMESTAMP");
-                remapTypes.put("TIMESTAMP(0)", "TIMESTAMP");
-                remapTypes.put("TIMESTAMP(3) NOT NULL", "TIMESTAMP");
-                remapTypes.put("TIMESTAMP(3)", "TIMESTAMP");
-                remapTypes.put("TIMESTAMP NOT NULL", "TIMESTAMPTZ");
-                remapTypes.put("TIMESTAMP", "TIMESTAMPTZ");
-                remapTypes.put("DECIMAL(10,2)", "FLOAT");
-                remapTypes.put("DECIMAL(12,2)", "FLOAT");
-
-                String mappedType = remapTypes.get(dataTypeName);
-                if (mappedType == null) {
-                    if (dataTypeName.toLowerCase().contains("varchar") && !dataTypeName.toLowerCase().endsWith("map")) {
-                        mappedType = "VARCHAR";
-                    } else if (dataTypeName.toLowerCase().contains("timestamp")) {
-                        mappedType = "TIMESTAMP";
-                    } else if (dataTypeName.toLowerCase().contains("decimal")) {
-                        mappedType = "FLOAT";
-                    } else if (dataTypeName.toLowerCase().startsWith("any")) {
-                        mappedType = "VARBINARY";
-                    } else if (dataTypeName.toLowerCase().endsWith("map")) {
-                        mappedType = "MAP";
-                    } else if (dataTypeName.toLowerCase().endsWith("array")) {
-                        mappedType = "LIST";
-                    } else if (dataTypeName.toLowerCase().contains("for json")) {
-                        mappedType = "JSON";
-                    } else {
-                        span.setAttribute(dataTypeName, "unknown column type");
-                        mappedType = "VARCHAR";
+        } catch (SQLException e) { /* ignore */ }
+    }
+
+    /**
+     * Looks up the primary and exported keys of all the given tables with one call of each
+     * per physical schema, instead of two calls per table.
+     * <p>
+     * JDBC drivers are not required to accept a null table name. The keys of a physical
+     * schema whose driver rejects it with an exception are left to be looked up per table.
+     * A schema without any keys is a valid, empty result.
+     *
+     * @return The tables whose keys have not been recorded.
+     */
+    private static List<TableMetadata> getKeysInBulk(DatabaseMetaData metaData, List<TableMetadata> tables) {
+        Map<List<String>, Map<String, TableMetadata>> bySchema = new LinkedHashMap<>();
+        for (TableMetadata table : tables) {
+            bySchema.computeIfAbsent(Arrays.asList(table.physicalCatalog, table.physicalSchema), k -> new LinkedHashMap<>())
+                    .put(table.name, table);
+        }
+        List<TableMetadata> remaining = new ArrayList<>();
+        for (Map.Entry<List<String>, Map<String, TableMetadata>> entry : bySchema.entrySet()) {
+            String catalog = entry.getKey().get(0);
+            String schema = entry.getKey().get(1);
+            Map<String, TableMetadata> byName = entry.getValue();
+            Map<TableMetadata, List<String>> primaryKeys = new IdentityHashMap<>();
+            Map<TableMetadata, List<ExportedKey>> exportedKeys = new IdentityHashMap<>();
+            try {
+                try (ResultSet pks = metaData.getPrimaryKeys(catalog, schema, null)) {
+                    while (pks.next()) {
+                        if (!inSchema(pks, "TABLE_SCHEM", schema)) {
+                            continue;
+                        }
+                        TableMetadata table = byName.get(pks.getString("TABLE_NAME"));
+                        if (table != null) {
+                            primaryKeys.computeIfAbsent(table, k -> new ArrayList<>()).add(pks.getString("COLUMN_NAME"));
+                        }
                     }
                 }
-                if (dataTypeName.startsWith("VARCHAR(65536)") && sqliteFlag) {
-                    if (columnName.toLowerCase().contains("date")) {
-                        mappedType = "TIMESTAMP";
+                try (ResultSet eks = metaData.getExportedKeys(catalog, schema, null)) {
+                    while (eks.next()) {
+                        if (!inSchema(eks, "PKTABLE_SCHEM", schema)) {
+                            continue;
+                        }
+                        TableMetadata table = byName.get(eks.getString("PKTABLE_NAME"));
+                        if (table != null) {
+                            exportedKeys.computeIfAbsent(table, k -> new ArrayList<>()).add(exportedKey(eks));
+                        }
                     }
                 }
-                columns.put(columnName, new ColumnMetadata(
-                        columnName,
-                        mappedType,
-                        nullable,
-                        description
-                ));
+            } catch (SQLException e) {
+                logger.debug("Schema-wide key lookup is not supported for " + schema + ", looking up keys per table: " + e);
+                remaining.addAll(byName.values());
+                continue;
+            }
+            primaryKeys.forEach((table, keys) -> table.primaryKeys.addAll(keys));
+            exportedKeys.forEach((table, keys) -> table.exportedKeys.addAll(keys));
+        }
+        return remaining;
+    }
+
+    /**
+     * Drivers may take the schema name of a metadata call as a LIKE pattern, in which
+     * {@code _} and {@code %} also match other schemas, so the rows of schema-wide
+     * lookups are checked against the exact name.
+     */
+    private static boolean inSchema(ResultSet rows, String schemaColumn, String schemaName) throws SQLException {
+        return schemaName == null || schemaName.equals(rows.getString(schemaColumn));
+    }
+
+    private static ExportedKey exportedKey(ResultSet eks) throws SQLException {
+        return new ExportedKey(
+                eks.getString("PKTABLE_CAT"),
+                eks.getString("PKTABLE_SCHEM"),
+                eks.getString("PKTABLE_NAME"),
+                eks.getString("PKCOLUMN_NAME"),
+                eks.getString("PK_NAME"),
+                eks.getString("FKTABLE_CAT"),
+                eks.getString("FKTABLE_SCHEM"),
+                eks.getString("FKTABLE_NAME"),
+                eks.getString("FKCOLUMN_NAME"),
+                eks.getString("FK_NAME")
+        );
+    }
+
+    private Map<String, ColumnMetadata> getTableColumnInfo(TableMetadata table, DatabaseMetaData metaData, TypeResolver types) {
+        Tracer tracer = openTelemetry.getTracer("calcite-driver");
+        Span span = tracer.spanBuilder("getTables").startSpan();
+        Map<String, ColumnMetadata> columns = new HashMap<>();
+        try (ResultSet columnsSet = metaData.getColumns(table.catalog, table.schema, table.name, null)) {
+            while (columnsSet.next()) {
+                ColumnMetadata column = mapColumn(columnsSet, types, span);
+                columns.put(column.name, column);
             }
             span.setAttribute("Number of Columns Mapped", columns.size());
             span.setStatus(StatusCode.OK);
@@ -414,6 +899,56 @@ public class CalciteQuery {
 
     }
 
+    /**
+     * Maps the columns of every table of a schema with a single metadata call.
+     *
+     * @return The columns of each table, by table name.
+     */
+    private Map<String, Map<String, ColumnMetadata>> getSchemaColumnInfo(String catalog, String schemaName, DatabaseMetaData metaData, TypeResolver types) {
+        Tracer tracer = openTelemetry.getTracer("calcite-driver");
+        Span span = tracer.spanBuilder("getSchemaColumns").startSpan();
+        span.setAttribute("schema", schemaName);
+        Map<String, Map<String, ColumnMetadata>> tables = new HashMap<>();
+        int count = 0;
+        try (ResultSet columnsSet = metaData.getColumns(catalog, schemaName, null, null)) {
+            while (columnsSet.next()) {
+                if (!inSchema(columnsSet, "TABLE_SCHEM", schemaName)) {
+                    continue;
+                }
+                ColumnMetadata column = mapColumn(columnsSet, types, span);
+                tables.computeIfAbsent(columnsSet.getString("TABLE_NAME"), k -> new HashMap<>()).put(column.name, column);
+                count++;
+            }
+            span.setAttribute("Number of Columns Mapped", count);
+            span.setStatus(StatusCode.OK);
+            return tables;
+        } catch (SQLException e) {
+            span.setAttribute("Error", e.toString());
+            span.setStatus(StatusCode.ERROR);
+            throw new RuntimeException(e);
+        } finally {
+            span.end();
+        }
+    }
+
+    private static ColumnMetadata mapColumn(ResultSet columnsSet, TypeResolver types, Span span) throws SQLException {
+        String columnName = columnsSet.getString("COLUMN_NAME");
+        String description = columnsSet.getString("REMARKS");
+        String dataTypeName = columnsSet.getString("TYPE_NAME");
+        boolean nullable = columnsSet.getBoolean("NULLABLE");
+        String mappedType = types.resolve(dataTypeName, columnName);
+        if (mappedType == null) {
+            span.setAttribute(String.valueOf(dataTypeName), "unknown column type");
+            mappedType = "VARCHAR";
+        }
+        return new ColumnMetadata(
+                columnName,
+                mappedType,
+                nullable,
+                description
+        );
+    }
+
     /**
      * Retrieves the models.
      * <p>
@@ -422,7 +957,22 @@ public class CalciteQuery {
      * That maybe a useful improvement in a future version. In addition,
      * it's based on a dictionary of known data types - and unknown types default
      * to VARCHAR. Using a fuzzy algorithm to determine the data type could be
-     * a future improvement.
+     * a future improvement. The mapping is done by {@link TypeResolver}, and a schema
+     * in the model can override it with a {@code typeMappings} object.
+     * <p>
+     * Sub-schemas are introspected in parallel, each on its own pooled connection,
+     * with at most {@code ndc.calcite.introspection.parallelism} (default 8) at a time,
+     * and never more than the pool has free connections beyond one left for queries.
+     * Unless {@code ndc.calcite.introspection.bulk} is {@code false}, the columns and keys
+     * of a sub-schema are fetched with schema-wide metadata calls rather than per table.
+     * <p>
+     * When {@code ndc.calcite.metadataSnapshot} is {@code true} (default {@code false}),
+     * the result is kept in a {@link MetadataSnapshot} keyed by the model and the versions
+     * of the source databases and their drivers. A snapshot is then returned straight
+     * away, so it may be out of date until it has been revalidated in the background,
+     * which re-introspects only the sub-schemas whose tables, columns or keys have changed.
+     * {@link #getModels(String[])} always introspects. The version of the returned
+     * metadata is available from {@link #getModelVersion()}.
      *
      * @return A JSON string representing the models.
      */
@@ -432,12 +982,166 @@ public class CalciteQuery {
         try {
             Gson gson = new Gson();
             Map<String, TableMetadata> result = new HashMap<>();
-            Collection<TableMetadata> tables = getTables();
-            for (TableMetadata table : tables) {
-                table.columns = getTableColumnInfo(table);
-                span.setAttribute(String.format("Table Name: '%s'", table.name), String.format("Column Count: %d", table.columns.size()));
-                result.put(table.name, table);
+            List<MetadataSnapshot.SchemaEntry> schemas = null;
+            MetadataSnapshot snapshot = null;
+            if (METADATA_SNAPSHOT) {
+                snapshot = new MetadataSnapshot(modelVersion, getSourceVersions());
+                schemas = snapshot.load();
+            }
+            if (schemas == null) {
+                schemas = getTables(TableFilter.ALL, snapshot != null);
+                if (snapshot != null) {
+                    snapshot.save(schemas);
+                }
+            } else {
+                span.setAttribute("Loaded from snapshot", true);
+                List<String[]> lanes = new ArrayList<>();
+                for (MetadataSnapshot.SchemaEntry entry : schemas) {
+                    lanes.add(new String[]{entry.catalog, entry.schema});
+                }
+                updateSqliteFlag(lanes);
+                if (revalidatingSnapshot.compareAndSet(false, true)) {
+                    MetadataSnapshot loaded = snapshot;
+                    List<MetadataSnapshot.SchemaEntry> entries = schemas;
+                    queryExecutor.execute(() -> revalidateSnapshot(loaded, entries));
+                }
+            }
+            metadataVersion = MetadataSnapshot.saveVersion(schemas, METADATA_SNAPSHOT);
+            span.setAttribute("Metadata version", metadataVersion);
+            for (MetadataSnapshot.SchemaEntry schema : schemas) {
+                for (TableMetadata table : schema.tables) {
+                    span.setAttribute(String.format("Table Name: '%s'", table.name), String.format("Column Count: %d", table.columns.size()));
+                    result.put(table.name, table);
+                }
+            }
+            span.setStatus(StatusCode.OK);
+            return gson.toJson(result);
+        } catch (Exception e) {
+            span.setAttribute("Error", e.toString());
+            span.setStatus(StatusCode.ERROR);
+            return "{\"error\":\"" + e + "\"}";
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Introspects only the schemas and tables matching the given patterns, bypassing the
+     * metadata snapshot.
+     * <p>
+     * A pattern is {@code schema} or {@code schema.table}, where {@code *} and {@code ?}
+     * are wildcards; see {@link TableFilter}.
+     *
+     * @param schemaOrTablePatterns The patterns; {@code null} or none selects every table.
+     * @return A JSON string representing the selected models, in the form returned by {@link #getModels()}.
+     */
+    public String getModels(String[] schemaOrTablePatterns) {
+        Tracer tracer = openTelemetry.getTracer("calcite-driver");
+        Span span = tracer.spanBuilder("getModels").startSpan();
+        try {
+            span.setAttribute("Patterns", String.join(",", schemaOrTablePatterns == null ? new String[0] : schemaOrTablePatterns));
+            Map<String, TableMetadata> result = new HashMap<>();
+            for (MetadataSnapshot.SchemaEntry schema : getTables(TableFilter.of(schemaOrTablePatterns), false)) {
+                for (TableMetadata table : schema.tables) {
+                    result.put(table.name, table);
+                }
+            }
+            span.setAttribute("Number of Tables", result.size());
+            span.setStatus(StatusCode.OK);
+            return gson.toJson(result);
+        } catch (Exception e) {
+            span.setAttribute("Error", e.toString());
+            span.setStatus(StatusCode.ERROR);
+            return "{\"error\":\"" + e + "\"}";
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * @return The version of the metadata last returned by {@link #getModels()} or
+     * {@link #getModelChanges(String)}, or {@code null} if none has been returned.
+     */
+    public String getModelVersion() {
+        return metadataVersion;
+    }
+
+    /**
+     * Introspects the model and returns only what changed since a version of its metadata.
+     * <p>
+     * The result is {@code {"version":...,"since":...,"reset":false,"added":{...},"changed":{...},"removed":[...]}},
+     * where {@code added} and {@code changed} map table names to their metadata, as in
+     * {@link #getModels()}, and {@code removed} lists table names. If the given version is
+     * no longer retained, {@code reset} is {@code true} and every table is listed as added.
+     * <p>
+     * Only the sub-schemas whose signature differs from the one recorded in the given
+     * version are introspected again, see {@link #refreshTables}. Versions returned by
+     * {@link #getModels()} without a metadata snapshot carry no signatures, so the first
+     * call after one introspects every sub-schema.
+     *
+     * @param sinceVersion A version from {@link #getModelVersion()} or an earlier call.
+     * @return A JSON string representing the changes.
+     */
+    public String getModelChanges(String sinceVersion) {
+        Tracer tracer = openTelemetry.getTracer("calcite-driver");
+        Span span = tracer.spanBuilder("getModelChanges").startSpan();
+        span.setAttribute("Since version", String.valueOf(sinceVersion));
+        try {
+            List<MetadataSnapshot.SchemaEntry> since = MetadataSnapshot.loadVersion(sinceVersion, METADATA_SNAPSHOT);
+            List<MetadataSnapshot.SchemaEntry> schemas = refreshTables(since == null ? Collections.emptyList() : since, span);
+            if (METADATA_SNAPSHOT) {
+                new MetadataSnapshot(modelVersion, getSourceVersions()).save(schemas);
+            }
+            String version = MetadataSnapshot.saveVersion(schemas, METADATA_SNAPSHOT);
+            metadataVersion = version;
+
+            Set<MetadataSnapshot.SchemaEntry> unchanged = Collections.newSetFromMap(new IdentityHashMap<>());
+            unchanged.addAll(schemas);
+            Map<String, String> previous = new HashMap<>();
+            if (since != null) {
+                unchanged.retainAll(since);
+                for (MetadataSnapshot.SchemaEntry schema : since) {
+                    for (TableMetadata table : schema.tables) {
+                        // Tables of unchanged sub-schemas are not compared, only their names are needed.
+                        previous.put(table.name, unchanged.contains(schema) ? "" : gson.toJson(table));
+                    }
+                }
+            } else {
+                unchanged.clear();
             }
+            Map<String, TableMetadata> added = new HashMap<>();
+            Map<String, TableMetadata> changed = new HashMap<>();
+            Set<String> current = new HashSet<>();
+            for (MetadataSnapshot.SchemaEntry schema : schemas) {
+                if (unchanged.contains(schema)) {
+                    for (TableMetadata table : schema.tables) {
+                        current.add(table.name);
+                    }
+                    continue;
+                }
+                for (TableMetadata table : schema.tables) {
+                    current.add(table.name);
+                    String before = previous.get(table.name);
+                    if (before == null) {
+                        added.put(table.name, table);
+                    } else if (!before.equals(gson.toJson(table))) {
+                        changed.put(table.name, table);
+                    }
+                }
+            }
+            List<String> removed = new ArrayList<>(previous.keySet());
+            removed.removeAll(current);
+
+            JsonObject result = new JsonObject();
+            result.addProperty("version", version);
+            result.addProperty("since", sinceVersion);
+            result.addProperty("reset", since == null);
+            result.add("added", gson.toJsonTree(added));
+            result.add("changed", gson.toJsonTree(changed));
+            result.add("removed", gson.toJsonTree(removed));
+            span.setAttribute("Tables added", added.size());
+            span.setAttribute("Tables changed", changed.size());
+            span.setAttribute("Tables removed", removed.size());
             span.setStatus(StatusCode.OK);
             return gson.toJson(result);
         } catch (Exception e) {
@@ -461,11 +1165,204 @@ public class CalciteQuery {
 
     /**
      * Executes a SQL query on the database and returns the result as a JSON string.
+     * <p>
+     * Rows are streamed from the result set into a single UTF-8 buffer as compact
+     * JSON, so the result is never held as intermediate row maps.
      *
      * @param query The SQL query to execute.
      * @return A JSON string representing the result of the query.
      */
     public String queryModels(String query, String parentTraceId, String parentSpanId) {
+        return queryModels(query, parentTraceId, parentSpanId, false);
+    }
+
+    private String queryModels(String query, String parentTraceId, String parentSpanId, boolean waitForConnection) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        String error = writeQueryModels(query, parentTraceId, parentSpanId, buffer, waitForConnection);
+        return error != null ? error : buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Executes independent SQL queries concurrently and returns all results in one call,
+     * such as the row query and the aggregate query of one request.
+     * <p>
+     * Each query runs on its own pooled connection. The first runs on the calling
+     * thread and the others run in the background. The result is a JSON array with one
+     * element per query, in order. Each element is the JSON that
+     * {@link #queryModels(String, String, String)} returns for that query, so one
+     * failing query does not hide the results of the others.
+     *
+     * @param queries The SQL queries to execute.
+     * @return A JSON array of the results of the queries.
+     */
+    public String queryModelsBatch(String[] queries, String parentTraceId, String parentSpanId) {
+        List<Future<String>> pending = new ArrayList<>(Math.max(0, queries.length - 1));
+        for (int i = 1; i < queries.length; i++) {
+            String query = queries[i];
+            pending.add(queryExecutor.submit(() -> queryModels(query, parentTraceId, parentSpanId)));
+        }
+        StringBuilder envelope = new StringBuilder("[");
+        if (queries.length > 0) {
+            envelope.append(queryModels(queries[0], parentTraceId, parentSpanId));
+        }
+        for (Future<String> future : pending) {
+            envelope.append(',');
+            try {
+                envelope.append(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                envelope.append(errorResponse(e, Span.getInvalid()));
+            } catch (ExecutionException e) {
+                envelope.append(errorResponse(e.getCause(), Span.getInvalid()));
+            }
+        }
+        return envelope.append(']').toString();
+    }
+
+    /**
+     * A query started with {@link #submitQuery(String, String, String)}, the callers waiting
+     * for it, and when it completed or its handle was last used.
+     */
+    private static final class PendingQuery {
+        volatile Future<String> future;
+        final AtomicInteger waiters = new AtomicInteger();
+        volatile long lastAccess;
+        volatile boolean completed;
+
+        void complete() {
+            lastAccess = System.nanoTime();
+            completed = true;
+        }
+
+        /**
+         * @return Whether the query has completed and no caller has waited for it for longer than the handle timeout.
+         */
+        boolean isAbandoned() {
+            return completed && waiters.get() == 0 && System.nanoTime() - lastAccess > QUERY_HANDLE_TIMEOUT_NANOS;
+        }
+    }
+
+    /**
+     * Starts executing a SQL query in the background and returns immediately.
+     * <p>
+     * The query runs on a pooled connection. Any number of queries can be submitted:
+     * as many run at once as the connection pool allows, and the others wait for a free
+     * connection without the pool's borrow timeout. The result is collected with
+     * {@link #awaitResult(long, long)}, which returns the same JSON as
+     * {@link #queryModels(String, String, String)}. A handle whose query has completed
+     * and that is not awaited for {@code ndc.calcite.query.handleTimeoutMillis} (default
+     * 300000) is dropped with its result and becomes invalid. A handle is never dropped
+     * while its query runs or a caller waits for it.
+     *
+     * @param query The SQL query to execute.
+     * @return A handle identifying the submitted query.
+     */
+    public long submitQuery(String query, String parentTraceId, String parentSpanId) {
+        long handle = nextQueryHandle.incrementAndGet();
+        PendingQuery pending = new PendingQuery();
+        pending.future = queryExecutor.submit(() -> {
+            try {
+                return queryModels(query, parentTraceId, parentSpanId, true);
+            } finally {
+                pending.complete();
+            }
+        });
+        pendingQueries.put(handle, pending);
+        return handle;
+    }
+
+    /**
+     * Waits for the result of a query started with {@link #submitQuery(String, String, String)}.
+     * <p>
+     * A timeout of zero polls without blocking, which lets the native side check for
+     * completion without holding the JVM for the duration of the query. A negative
+     * timeout waits until the query completes. Once a result has been returned the
+     * handle is no longer valid.
+     *
+     * @param handle        The handle returned by {@link #submitQuery(String, String, String)}.
+     * @param timeoutMillis How long to wait for the query to complete.
+     * @return The JSON result, or {@code null} if the query has not completed within the timeout.
+     */
+    public String awaitResult(long handle, long timeoutMillis) {
+        PendingQuery pending = pendingQueries.get(handle);
+        if (pending == null) {
+            return errorResponse(new IllegalArgumentException("Unknown query handle: " + handle), Span.getInvalid());
+        }
+        Future<String> future = pending.future;
+        pending.waiters.incrementAndGet();
+        try {
+            String result = timeoutMillis < 0 ? future.get() : future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            pendingQueries.remove(handle);
+            return result;
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return errorResponse(e, Span.getInvalid());
+        } catch (CancellationException e) {
+            pendingQueries.remove(handle);
+            return errorResponse(e, Span.getInvalid());
+        } catch (ExecutionException e) {
+            pendingQueries.remove(handle);
+            return errorResponse(e.getCause(), Span.getInvalid());
+        } finally {
+            pending.lastAccess = System.nanoTime();
+            pending.waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Cancels a query started with {@link #submitQuery(String, String, String)} and
+     * invalidates its handle.
+     *
+     * @param handle The handle returned by {@link #submitQuery(String, String, String)}.
+     * @return {@code true} if the query was still pending.
+     */
+    public boolean cancelQuery(long handle) {
+        PendingQuery pending = pendingQueries.remove(handle);
+        return pending != null && pending.future.cancel(true);
+    }
+
+    /**
+     * Executes a SQL query on the database and returns the UTF-8 encoded JSON result
+     * in a pooled direct buffer, so the native side can read it in place.
+     * <p>
+     * The returned buffer's capacity is the length of the JSON document. It should be
+     * handed back through {@link #releaseBuffer(ByteBuffer)} once it has been read; a
+     * buffer that is dropped instead is reclaimed once it has been garbage collected.
+     *
+     * @param query The SQL query to execute.
+     * @return A direct buffer holding the same JSON as {@link #queryModels(String, String, String)}.
+     */
+    public ByteBuffer queryModelsDirect(String query, String parentTraceId, String parentSpanId) {
+        DirectBufferOutputStream buffer = new DirectBufferOutputStream(bufferPool);
+        String error = writeQueryModels(query, parentTraceId, parentSpanId, buffer, false);
+        if (error != null) {
+            buffer.reset();
+            byte[] bytes = error.getBytes(StandardCharsets.UTF_8);
+            buffer.write(bytes, 0, bytes.length);
+        }
+        return buffer.toByteBuffer();
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #queryModelsDirect(String, String, String)} to the pool.
+     *
+     * @param buffer The buffer the native side has finished reading.
+     */
+    public void releaseBuffer(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    /**
+     * Executes a SQL query and streams the JSON result into the given output.
+     *
+     * @param query             The SQL query to execute.
+     * @param out               The stream receiving the UTF-8 encoded rows.
+     * @param waitForConnection Whether to wait for a pooled connection without the pool's borrow timeout.
+     * @return {@code null} on success, otherwise the JSON error response to return instead of the output.
+     */
+    private String writeQueryModels(String query, String parentTraceId, String parentSpanId, OutputStream out, boolean waitForConnection) {
         Tracer tracer = openTelemetry.getTracer("calcite-driver");
         SpanContext parentSpanContext = SpanContext.createFromRemoteParent(
                 parentTraceId,
@@ -477,114 +1374,292 @@ public class CalciteQuery {
         Span span = tracer.spanBuilder("queryModels")
                 .setParent(context)
                 .startSpan();
+        CalciteConnectionPool.PooledConnection pooled = null;
+        PreparedStatement preparedStatement = null;
         try {
-            Statement statement = connection.createStatement();
             span.setAttribute("query", query);
-            PreparedStatement preparedStatement = StatementPreparer.prepare(query, connection, handleDates());
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (query.toLowerCase().trim().startsWith("select json_object(")) {
-                span.setAttribute("Using JSON_OBJECT() method", true);
-                ArrayList<String> rows = new ArrayList<>();
-                while (resultSet.next()) {
-                    rows.add(resultSet.getString(1));
-                }
-                resultSet.close();
-                statement.close();
-                Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                String result = gson.toJson(rows);
-                span.setAttribute("Rows returned", rows.size());
-                span.setStatus(StatusCode.OK);
-                return result;
-            } else {
-
-                span.setAttribute("Not Using JSON_OBJECT() method", false);
-                // Java's inbuilt DateTimeFormatter doesn't have any predefined format for RFC 3339
-                DateTimeFormatter rfcFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ENGLISH).withZone(ZoneId.of("UTC"));
-                DateTimeFormatter rfcDateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.ENGLISH).withZone(ZoneId.of("UTC"));
-
-                List<Map<String, Object>> rows = new ArrayList<>();
-
-                try {
-
-                    ResultSetMetaData metaData = resultSet.getMetaData();
-                    int columnCount = metaData.getColumnCount();
-                    Pattern timestampPattern = Pattern.compile("^\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}$");
-
+            pooled = waitForConnection ? connectionPool.borrow(-1) : connectionPool.borrow();
+            preparedStatement = StatementPreparer.prepare(query, pooled.statementCache, handleDates());
+            int rowCount;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (query.toLowerCase().trim().startsWith("select json_object(")) {
+                    span.setAttribute("Using JSON_OBJECT() method", true);
+                    JsonWriter writer = ResultSetJsonWriter.newJsonWriter(out);
+                    rowCount = 0;
+                    writer.beginArray();
                     while (resultSet.next()) {
-                        Map<String, Object> columns = new LinkedHashMap<>();
-                        for (int i = 1; i <= columnCount; i++) {
-                            String columnName = metaData.getColumnName(i);
-                            Object value = resultSet.getObject(i);
-                            String columnLabel = metaData.getColumnLabel(i);
-
-                            // Determine the final value to put in the map
-                            Object finalValue;
-                            if (value instanceof java.sql.Date) {
-                                java.sql.Date sqlDate = (java.sql.Date) value;
-                                java.util.Date utilDate = new java.util.Date(sqlDate.getTime());
-                                finalValue = rfcDateFormat.format(utilDate.toInstant());
-                            } else if (value instanceof java.sql.Timestamp) {
-                                java.sql.Timestamp sqlTimestamp = (java.sql.Timestamp) value;
-                                java.util.Date utilDate = new java.util.Date(sqlTimestamp.getTime());
-                                finalValue = rfcFormat.format(utilDate.toInstant());
-                            } else if (value instanceof ArrayImpl) {
-                                finalValue = ((ArrayImpl) value).getArray();
-                            } else if (sqliteFlag && value instanceof String &&
-                                      columnLabel.toLowerCase().contains("date") &&
-                                      timestampPattern.matcher((String) value).matches()) {
-                                finalValue = ((String) value).replace(" ", "T");
-                            } else {
-                                finalValue = value;
-                            }
-
-                            columns.put(columnLabel, finalValue);
-                        }
-                        rows.add(columns);
+                        writer.value(resultSet.getString(1));
+                        rowCount++;
                     }
+                    writer.endArray();
+                    writer.flush();
+                } else {
+                    span.setAttribute("Not Using JSON_OBJECT() method", false);
+                    rowCount = new ResultSetJsonWriter(resultSet, sqliteFlag).writeAll(out);
+                }
+            }
+            span.setAttribute("Rows returned", rowCount);
+            span.setStatus(StatusCode.OK);
+            return null;
+        } catch (Throwable e) {
+            return errorResponse(e, span);
+        } finally {
+            if (preparedStatement != null) {
+                pooled.statementCache.release(preparedStatement);
+            }
+            if (pooled != null) {
+                connectionPool.release(pooled);
+            }
+            span.end();
+        }
+    }
 
-                } catch(Throwable e) {
-                    e.printStackTrace();
-                } finally {
+    /**
+     * Executes a SQL query and exports the result as an Arrow C Data Interface stream.
+     * <p>
+     * The native side allocates an empty {@code ArrowArrayStream} struct and passes its
+     * address. Record batches are produced from the result set as the stream is read and
+     * the statement and its pooled connection stay borrowed until the consumer releases
+     * the stream.
+     *
+     * @param query         The SQL query to execute.
+     * @param streamAddress The address of the {@code ArrowArrayStream} to export into.
+     * @return {@code null} on success, otherwise a JSON error response.
+     */
+    public String queryModelsArrow(String query, String parentTraceId, String parentSpanId, long streamAddress) {
+        Tracer tracer = openTelemetry.getTracer("calcite-driver");
+        SpanContext parentSpanContext = SpanContext.createFromRemoteParent(
+                parentTraceId,
+                parentSpanId,
+                TraceFlags.getDefault(),
+                TraceState.getDefault()
+        );
+        Context context = Context.current().with(Span.wrap(parentSpanContext));
+        Span span = tracer.spanBuilder("queryModelsArrow")
+                .setParent(context)
+                .startSpan();
+        CalciteConnectionPool.PooledConnection pooled = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        ResultSetArrowReader reader = null;
+        try {
+            span.setAttribute("query", query);
+            pooled = connectionPool.borrow();
+            preparedStatement = StatementPreparer.prepare(query, pooled.statementCache, handleDates());
+            resultSet = preparedStatement.executeQuery();
+            final CalciteConnectionPool.PooledConnection borrowed = pooled;
+            final PreparedStatement statement = preparedStatement;
+            reader = new ResultSetArrowReader(arrowAllocator, resultSet, () -> {
+                borrowed.statementCache.release(statement);
+                connectionPool.release(borrowed);
+            });
+            Data.exportArrayStream(arrowAllocator, reader, ArrowArrayStream.wrap(streamAddress));
+            span.setStatus(StatusCode.OK);
+            return null;
+        } catch (Throwable e) {
+            if (reader != null) {
+                // Frees the reader's Arrow buffers, then closes the result set and hands back the statement and connection.
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                    /* ignore */
+                }
+                return errorResponse(e, span);
+            }
+            try {
+                if (resultSet != null) {
                     resultSet.close();
                 }
+            } catch (SQLException ignored) {
+                /* ignore */
+            }
+            if (preparedStatement != null) {
+                pooled.statementCache.release(preparedStatement);
+            }
+            if (pooled != null) {
+                connectionPool.release(pooled);
+            }
+            return errorResponse(e, span);
+        } finally {
+            span.end();
+        }
+    }
 
-                statement.close();
-                Gson gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
-                String result = gson.toJson(rows);
+    /**
+     * Executes a SQL query and keeps its result set open, so the rows can be read in
+     * bounded chunks with {@link #fetchChunk(long, int, long)}.
+     * <p>
+     * The cursor holds a pooled connection until its last row has been fetched or it
+     * is closed with {@link #closeCursor(long)}. A cursor that is not fetched from for
+     * {@code ndc.calcite.cursor.idleTimeoutMillis} (default 300000) is closed.
+     *
+     * @param query The SQL query to execute.
+     * @return {@code {"cursor_id":id}} on success, otherwise a JSON error response.
+     */
+    public String openCursor(String query, String parentTraceId, String parentSpanId) {
+        Tracer tracer = openTelemetry.getTracer("calcite-driver");
+        SpanContext parentSpanContext = SpanContext.createFromRemoteParent(
+                parentTraceId,
+                parentSpanId,
+                TraceFlags.getDefault(),
+                TraceState.getDefault()
+        );
+        Context context = Context.current().with(Span.wrap(parentSpanContext));
+        Span span = tracer.spanBuilder("openCursor")
+                .setParent(context)
+                .startSpan();
+        CalciteConnectionPool.PooledConnection pooled = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            span.setAttribute("query", query);
+            pooled = connectionPool.borrow();
+            preparedStatement = StatementPreparer.prepare(query, pooled.statementCache, handleDates());
+            resultSet = preparedStatement.executeQuery();
+            final CalciteConnectionPool.PooledConnection borrowed = pooled;
+            final PreparedStatement statement = preparedStatement;
+            boolean jsonObjectRows = query.toLowerCase().trim().startsWith("select json_object(");
+            QueryCursor cursor = new QueryCursor(resultSet, jsonObjectRows, sqliteFlag, () -> {
+                borrowed.statementCache.release(statement);
+                connectionPool.release(borrowed);
+            });
+            long cursorId = nextCursorId.incrementAndGet();
+            cursors.put(cursorId, cursor);
+            span.setAttribute("cursorId", cursorId);
+            span.setStatus(StatusCode.OK);
+            return "{\"cursor_id\":" + cursorId + "}";
+        } catch (Throwable e) {
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+            } catch (SQLException ignored) {
+                /* ignore */
+            }
+            if (preparedStatement != null) {
+                pooled.statementCache.release(preparedStatement);
+            }
+            if (pooled != null) {
+                connectionPool.release(pooled);
+            }
+            return errorResponse(e, span);
+        } finally {
+            span.end();
+        }
+    }
 
-                span.setAttribute("Rows returned", rows.size());
-                span.setStatus(StatusCode.OK);
-                return result;
+    /**
+     * Reads the next chunk of rows from a cursor opened with {@link #openCursor(String, String, String)}.
+     * <p>
+     * The chunk is {@code {"rows":[...],"has_more":true|false}}, where each row is
+     * encoded as in {@link #queryModels(String, String, String)}. A chunk holds at most
+     * {@code maxRows} rows and stops once its size reaches {@code maxBytes}. The cursor
+     * is closed once a chunk reports no more rows, or when fetching fails.
+     *
+     * @param cursorId The id returned by {@link #openCursor(String, String, String)}.
+     * @param maxRows  The maximum number of rows to return.
+     * @param maxBytes The approximate maximum size of the chunk in bytes.
+     * @return The JSON chunk, or a JSON error response.
+     */
+    public String fetchChunk(long cursorId, int maxRows, long maxBytes) {
+        QueryCursor cursor = cursors.get(cursorId);
+        if (cursor == null) {
+            return errorResponse(new IllegalArgumentException("Unknown or closed cursor: " + cursorId), Span.getInvalid());
+        }
+        try {
+            String chunk = cursor.fetch(maxRows, maxBytes);
+            if (cursor.isClosed()) {
+                cursors.remove(cursorId);
             }
+            return chunk;
         } catch (Throwable e) {
-             span.setStatus(StatusCode.ERROR);
-
-             // Create a more structured error response
-             String errorMessage = e.getMessage();
-             String errorType = e.getClass().getSimpleName();
-
-             // Add detailed error information to span attributes
-             span.setAttribute("error.type", errorType);
-             span.setAttribute("error.message", errorMessage);
-
-             // Create a JSON error response
-             Map<String, String> errorResponse = new LinkedHashMap<>();
-             errorResponse.put("error_type", errorType);
-             errorResponse.put("error_message", errorMessage);
-
-             // If there's a cause, include it
-             if (e.getCause() != null) {
-                 String causeMessage = e.getCause().getMessage();
-                 errorResponse.put("cause", causeMessage);
-                 span.setAttribute("error.cause", causeMessage);
-             }
-
-             Gson gson = new GsonBuilder().setPrettyPrinting().create();
-             return gson.toJson(errorResponse);
-    } finally {
-        span.end();
+            closeCursor(cursorId);
+            return errorResponse(e, Span.getInvalid());
+        }
+    }
+
+    /**
+     * Closes a cursor and hands its connection back to the pool.
+     *
+     * @param cursorId The id returned by {@link #openCursor(String, String, String)}.
+     * @return {@code true} if the cursor was still open.
+     */
+    public boolean closeCursor(long cursorId) {
+        QueryCursor cursor = cursors.remove(cursorId);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            cursor.close();
+        } catch (Exception e) {
+            logger.warn("Failed to close cursor " + cursorId + ": " + e);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the idle cursors and drops the abandoned query handles of every live instance.
+     */
+    private static void reapAll() {
+        List<CalciteQuery> live;
+        synchronized (instances) {
+            live = new ArrayList<>(instances);
+        }
+        for (CalciteQuery query : live) {
+            try {
+                query.reapIdleCursors();
+                query.reapAbandonedQueries();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to reap cursors and query handles: " + e);
+            }
+        }
     }
 
+    private void reapAbandonedQueries() {
+        for (Map.Entry<Long, PendingQuery> entry : pendingQueries.entrySet()) {
+            if (entry.getValue().isAbandoned() && pendingQueries.remove(entry.getKey(), entry.getValue())) {
+                logger.info("Dropping query handle " + entry.getKey() + " after its result was not awaited for too long");
+            }
+        }
+    }
+
+    private void reapIdleCursors() {
+        for (Map.Entry<Long, QueryCursor> entry : cursors.entrySet()) {
+            if (entry.getValue().idleNanos() > CURSOR_IDLE_TIMEOUT_NANOS) {
+                logger.info("Closing cursor " + entry.getKey() + " after it was idle for too long");
+                closeCursor(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Records a failure on the span and builds the JSON error response understood by the native side.
+     */
+    private static String errorResponse(Throwable e, Span span) {
+        span.setStatus(StatusCode.ERROR);
+
+        // Create a more structured error response
+        String errorMessage = e.getMessage();
+        String errorType = e.getClass().getSimpleName();
+
+        // Add detailed error information to span attributes
+        span.setAttribute("error.type", errorType);
+        span.setAttribute("error.message", errorMessage);
+
+        // Create a JSON error response
+        Map<String, String> errorResponse = new LinkedHashMap<>();
+        errorResponse.put("error_type", errorType);
+        errorResponse.put("error_message", errorMessage);
+
+        // If there's a cause, include it
+        if (e.getCause() != null) {
+            String causeMessage = e.getCause().getMessage();
+            errorResponse.put("cause", causeMessage);
+            span.setAttribute("error.cause", causeMessage);
+        }
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        return gson.toJson(errorResponse);
     }
 
     public String queryPlanModels(String query, String parentTraceId, String parentSpanId) {
@@ -599,10 +1674,12 @@ public class CalciteQuery {
         Span span = tracer.spanBuilder("queryPlanModels")
                 .setParent(context)
                 .startSpan();
+        CalciteConnectionPool.PooledConnection pooled = null;
+        PreparedStatement preparedStatement = null;
         try {
-            Statement statement = connection.createStatement();
             span.setAttribute("query", query);
-            PreparedStatement preparedStatement = StatementPreparer.prepare("explain plan for " + query, connection, handleDates());
+            pooled = connectionPool.borrow();
+            preparedStatement = StatementPreparer.prepare("explain plan for " + query, pooled.statementCache, handleDates());
             ResultSet resultSet = preparedStatement.executeQuery();
             JsonArray jsonArray = new JsonArray();
             JsonObject jsonObject = new JsonObject();
@@ -620,7 +1697,6 @@ public class CalciteQuery {
                 }
             }
             resultSet.close();
-            statement.close();
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
             jsonArray.add(gson.toJson(jsonObject));
             String result = gson.toJson(jsonArray);
@@ -632,6 +1708,12 @@ public class CalciteQuery {
             span.setAttribute("Error", e.toString());
             return "{\"error\":\"" + e + "\"}";
         } finally {
+            if (preparedStatement != null) {
+                pooled.statementCache.release(preparedStatement);
+            }
+            if (pooled != null) {
+                connectionPool.release(pooled);
+            }
             span.end();
         }
     }
@@ -0,0 +1,58 @@
+package com.hasura;
+
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * A representative startup, run once at build time to record the classes it loads into
+ * an AppCDS archive. The connector's JVM maps the archive instead of loading and
+ * verifying those classes again on every start. See {@code cds/create-cds-archive.sh}.
+ * <p>
+ * The run connects to the given model, waits for its warm-up, introspects it, and then
+ * executes every {@code warmup} template of the model, so that connection, planning,
+ * execution and serialization classes all end up in the archive.
+ */
+public class CdsTraining {
+
+    /**
+     * The tables of the training model, served by Calcite's reflective schema.
+     */
+    public static class TrainingData {
+        public final Item[] items = {
+                new Item(1, "first", 1.5, true),
+                new Item(2, "second", 2.5, false),
+                new Item(3, "third", 3.5, true)
+        };
+    }
+
+    public static class Item {
+        public final int id;
+        public final String name;
+        public final double price;
+        public final boolean active;
+
+        public Item(int id, String name, double price, boolean active) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.active = active;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String modelPath = args.length > 0 ? args[0] : "cds/training-model.json";
+        CalciteQuery query = new CalciteQuery();
+        Connection connection = query.createCalciteConnection(modelPath);
+        query.awaitReady(-1);
+        System.out.println("Introspected " + query.getModels().length() + " characters of metadata");
+        Object templates = query.model.get("warmup");
+        if (templates instanceof List) {
+            for (Object template : (List<?>) templates) {
+                System.out.println(query.queryModels(String.valueOf(template)));
+            }
+        }
+        connection.close();
+        // Background threads would otherwise keep the JVM, and the archive dump, waiting.
+        System.exit(0);
+    }
+}
@@ -1,54 +1,182 @@
 package com.hasura;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
 
 public class ConfigPreprocessor {
-    public static String preprocessConfig(String inputFilePath) throws IOException {
+
+    /**
+     * Keys of a model and of its schemas that configure the connector rather than Calcite.
+     * Calcite rejects keys it does not know, so they are removed from the model it is given.
+     */
+    static final Set<String> CONNECTOR_MODEL_KEYS = Set.of("warmup");
+    static final Set<String> CONNECTOR_SCHEMA_KEYS = Set.of("typeMappings", "lazy");
+
+    /**
+     * Keys of a schema of type {@code jdbc} that {@link PooledJdbcSchemaFactory} takes as its operand.
+     */
+    static final Set<String> JDBC_SCHEMA_KEYS = Set.of(
+            "jdbcUrl", "jdbcDriver", "jdbcUser", "jdbcPassword", "jdbcCatalog", "jdbcSchema", "sqlDialectFactory");
+
+    private static final Logger logger = LogManager.getLogger(ConfigPreprocessor.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final boolean POOLED_JDBC_SOURCES =
+            Boolean.parseBoolean(System.getProperty("ndc.calcite.source.pooling", "true"));
+
+    /**
+     * Reads a model file and replaces its placeholders with environment variable values.
+     *
+     * @param inputFilePath The path to a JSON or YAML model.
+     * @return The parsed model.
+     */
+    static Object resolveConfig(String inputFilePath) throws IOException {
         // Read the template file
-        String content = new String(Files.readAllBytes(Paths.get(inputFilePath)));
+        String content = new String(Files.readAllBytes(Paths.get(inputFilePath)), StandardCharsets.UTF_8);
 
         // Replace placeholders with environment variable values
-        Map<String, String> env = System.getenv();
-        for (Map.Entry<String, String> entry : env.entrySet()) {
-            String placeholder = "${" + entry.getKey() + "}";
-            content = content.replace(placeholder, entry.getValue());
-        }
+        content = substituteEnvironment(content, System.getenv());
 
-        // Determine if the file is JSON or YAML
-        boolean isJson = inputFilePath.endsWith(".json");
-
-        // Parse the content
-        ObjectMapper objectMapper = new ObjectMapper();
-        Object data;
-        if (isJson) {
-            data = objectMapper.readValue(content, Object.class);
+        // Parse the content, JSON or YAML
+        if (inputFilePath.endsWith(".json")) {
+            return objectMapper.readValue(content, Object.class);
         } else {
             Yaml yaml = new Yaml();
-            data = yaml.load(content);
+            return yaml.load(content);
         }
+    }
 
-        // Convert the data to JSON formatted string
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        String jsonString = objectMapper.writeValueAsString(data);
+    /**
+     * Replaces each {@code ${NAME}} with the value of the variable {@code NAME}, in one pass.
+     * Placeholders of unset variables are left as they are, and substituted values are not
+     * scanned for placeholders again.
+     *
+     * @param content The model text.
+     * @param env     The variables.
+     * @return The model text with its placeholders replaced.
+     */
+    static String substituteEnvironment(String content, Map<String, String> env) {
+        int start = content.indexOf("${");
+        if (start < 0) {
+            return content;
+        }
+        StringBuilder resolved = new StringBuilder(content.length() + 64);
+        int from = 0;
+        while (start >= 0) {
+            int end = content.indexOf('}', start + 2);
+            if (end < 0) {
+                break;
+            }
+            String value = env.get(content.substring(start + 2, end));
+            if (value == null) {
+                resolved.append(content, from, start + 2);
+                from = start + 2;
+            } else {
+                resolved.append(content, from, start).append(value);
+                from = end + 1;
+            }
+            start = content.indexOf("${", from);
+        }
+        return resolved.append(content, from, content.length()).toString();
+    }
 
-        // Generate a unique filename with UUID
-        String uniqueFilename = "resolved_config_" + UUID.randomUUID() + ".json";
+    /**
+     * Serializes a parsed model, in the form given to Calcite, as an inline model for the
+     * {@code model} connection property, so that nothing is written to disk.
+     *
+     * @param data The parsed model.
+     * @return {@code inline:} followed by the model as JSON.
+     */
+    static String inlineModel(Object data) throws IOException {
+        return "inline:" + objectMapper.writeValueAsString(toCalciteModel(data));
+    }
+
+    /**
+     * Converts a parsed model to the model given to Calcite. Connector keys are removed
+     * and, unless {@code ndc.calcite.source.pooling} is {@code false}, JDBC schemas are
+     * built by {@link PooledJdbcSchemaFactory}. Custom schemas marked {@code lazy} are
+     * built by {@link LazySchemaFactory}.
+     *
+     * @return A converted copy of the model, or the data itself if it is not a model.
+     */
+    @SuppressWarnings("unchecked")
+    static Object toCalciteModel(Object data) {
+        if (!(data instanceof Map)) {
+            return data;
+        }
+        Map<String, Object> model = new LinkedHashMap<>((Map<String, Object>) data);
+        model.keySet().removeAll(CONNECTOR_MODEL_KEYS);
+        if (!(model.get("schemas") instanceof List)) {
+            return model;
+        }
+        List<Object> schemas = new ArrayList<>();
+        for (Object schema : (List<Object>) model.get("schemas")) {
+            if (schema instanceof Map) {
+                Map<String, Object> copy = new LinkedHashMap<>((Map<String, Object>) schema);
+                boolean lazy = Boolean.parseBoolean(String.valueOf(copy.get("lazy")));
+                copy.keySet().removeAll(CONNECTOR_SCHEMA_KEYS);
+                if (POOLED_JDBC_SOURCES && "jdbc".equals(copy.get("type"))) {
+                    copy = toPooledJdbcSchema(copy);
+                }
+                if (lazy) {
+                    copy = toLazySchema(copy);
+                }
+                schemas.add(copy);
+            } else {
+                schemas.add(schema);
+            }
+        }
+        model.put("schemas", schemas);
+        return model;
+    }
 
-        // Write the JSON string to a file in a temporary directory
-        Path tempDir = Files.createTempDirectory("config");
-        Path tempFile = Files.createFile(Paths.get(tempDir.toString(), uniqueFilename));
-        Files.write(tempFile, jsonString.getBytes());
+    /**
+     * Wraps a custom schema in a {@link LazySchemaFactory}. JDBC schemas stay as they are,
+     * because generated code looks up their data source through the schema itself.
+     */
+    private static Map<String, Object> toLazySchema(Map<String, Object> schema) {
+        Object factory = schema.get("factory");
+        if (!"custom".equals(schema.get("type")) || factory == null
+                || PooledJdbcSchemaFactory.class.getName().equals(factory)) {
+            logger.warn("Ignoring lazy for schema " + schema.get("name") + ", only custom non-JDBC schemas can be lazy");
+            return schema;
+        }
+        Map<String, Object> operand = new LinkedHashMap<>();
+        operand.put("factory", factory);
+        if (schema.get("operand") != null) {
+            operand.put("operand", schema.get("operand"));
+        }
+        Map<String, Object> lazy = new LinkedHashMap<>(schema);
+        lazy.put("factory", LazySchemaFactory.class.getName());
+        lazy.put("operand", operand);
+        return lazy;
+    }
 
-        // Return the full path of the resolved file
-        return tempFile.toAbsolutePath().toString();
+    private static Map<String, Object> toPooledJdbcSchema(Map<String, Object> schema) {
+        Map<String, Object> custom = new LinkedHashMap<>();
+        Map<String, Object> operand = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : schema.entrySet()) {
+            if (JDBC_SCHEMA_KEYS.contains(entry.getKey())) {
+                operand.put(entry.getKey(), entry.getValue());
+            } else if (!"type".equals(entry.getKey())) {
+                custom.put(entry.getKey(), entry.getValue());
+            }
+        }
+        custom.put("type", "custom");
+        custom.put("factory", PooledJdbcSchemaFactory.class.getName());
+        custom.put("operand", operand);
+        return custom;
     }
 }
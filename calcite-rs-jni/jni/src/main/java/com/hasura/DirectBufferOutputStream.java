@@ -0,0 +1,66 @@
+package com.hasura;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link OutputStream} that writes into a growable direct buffer taken from a {@link DirectBufferPool}.
+ */
+class DirectBufferOutputStream extends OutputStream {
+
+    private final DirectBufferPool pool;
+    private ByteBuffer buffer;
+
+    DirectBufferOutputStream(DirectBufferPool pool) {
+        this.pool = pool;
+        this.buffer = pool.acquire(DirectBufferPool.MIN_CAPACITY);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        buffer.put(b, off, len);
+    }
+
+    /**
+     * Discards everything written so far, keeping the underlying buffer.
+     */
+    void reset() {
+        buffer.clear();
+    }
+
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Hands the written bytes over as an exact-length slice leased from the pool.
+     * The stream must not be written to afterwards.
+     *
+     * @return A direct buffer holding the written bytes, to be released through the pool.
+     */
+    ByteBuffer toByteBuffer() {
+        return pool.lease(buffer, buffer.position());
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buffer.remaining() >= extra) {
+            return;
+        }
+        int required = buffer.position() + extra;
+        if (required < 0) {
+            throw new OutOfMemoryError("Result does not fit in a direct buffer");
+        }
+        ByteBuffer larger = pool.acquire(Math.max(required, buffer.capacity() * 2));
+        buffer.flip();
+        larger.put(buffer);
+        pool.recycle(buffer);
+        buffer = larger;
+    }
+}
@@ -0,0 +1,162 @@
+package com.hasura;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A small pool of reusable direct {@link ByteBuffer}s used to hand query results
+ * across the JNI boundary without copying them into a Java String first.
+ * <p>
+ * Buffers are leased to the native side as exact-length slices so that
+ * {@code GetDirectBufferCapacity} reports the payload length. A leased slice
+ * should be handed back through {@link #release(ByteBuffer)} once the native
+ * side has finished reading it, which returns the backing buffer to the pool.
+ * <p>
+ * Leases are tracked weakly, so a slice that is dropped without being released
+ * does not pin its backing buffer: once the slice has been garbage collected the
+ * buffer is returned to the pool. The backing buffers of outstanding leases are
+ * bounded by the {@code ndc.calcite.directBuffer.maxLeasedBytes} system property
+ * (default 256 MB). Beyond it, results are copied into an exact-size direct buffer
+ * that the caller owns outright and that is freed by the garbage collector.
+ */
+class DirectBufferPool {
+
+    static final int MIN_CAPACITY = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 16;
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024 * 1024;
+    private static final long MAX_LEASED_BYTES = Long.getLong("ndc.calcite.directBuffer.maxLeasedBytes", 256L * 1024 * 1024);
+
+    /**
+     * A leased slice, referenced weakly, and the pooled buffer backing it.
+     */
+    private static final class Lease extends WeakReference<ByteBuffer> {
+        final ByteBuffer buffer;
+
+        Lease(ByteBuffer slice, ByteBuffer buffer, ReferenceQueue<ByteBuffer> queue) {
+            super(slice, queue);
+            this.buffer = buffer;
+        }
+    }
+
+    private final List<ByteBuffer> free = new ArrayList<>();
+    private final List<Lease> leases = new ArrayList<>();
+    private final ReferenceQueue<ByteBuffer> collected = new ReferenceQueue<>();
+    private long leasedBytes;
+
+    /**
+     * Takes a cleared buffer with at least the requested capacity, allocating one if none is pooled.
+     *
+     * @param minCapacity The minimum number of bytes the buffer must hold.
+     * @return A direct buffer positioned at zero.
+     */
+    synchronized ByteBuffer acquire(int minCapacity) {
+        ByteBuffer best = null;
+        for (ByteBuffer candidate : free) {
+            if (candidate.capacity() >= minCapacity && (best == null || candidate.capacity() < best.capacity())) {
+                best = candidate;
+            }
+        }
+        if (best != null) {
+            free.remove(best);
+            best.clear();
+            return best;
+        }
+        return ByteBuffer.allocateDirect(roundUp(minCapacity));
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire(int)} to the pool.
+     *
+     * @param buffer The buffer to recycle.
+     */
+    synchronized void recycle(ByteBuffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_CAPACITY && free.size() < MAX_POOLED_BUFFERS) {
+            free.add(buffer);
+        }
+    }
+
+    /**
+     * Leases the first {@code length} bytes of a pooled buffer to a caller outside the pool.
+     * When the outstanding leases already hold too much memory, the payload is copied into
+     * a buffer owned by the caller and the pooled buffer is recycled at once.
+     *
+     * @param buffer The pooled buffer holding the payload.
+     * @param length The payload length in bytes.
+     * @return A direct buffer whose capacity equals the payload length.
+     */
+    synchronized ByteBuffer lease(ByteBuffer buffer, int length) {
+        expungeCollectedLeases();
+        ByteBuffer view = buffer.duplicate();
+        view.position(0);
+        view.limit(length);
+        if (leasedBytes + buffer.capacity() > MAX_LEASED_BYTES) {
+            ByteBuffer copy = ByteBuffer.allocateDirect(length);
+            copy.put(view);
+            copy.clear();
+            recycle(buffer);
+            return copy;
+        }
+        ByteBuffer slice = view.slice();
+        leases.add(new Lease(slice, buffer, collected));
+        leasedBytes += buffer.capacity();
+        return slice;
+    }
+
+    /**
+     * Releases a slice previously returned by {@link #lease(ByteBuffer, int)}.
+     * Unknown buffers, including the copies handed out beyond the lease bound, are ignored.
+     *
+     * @param slice The leased slice.
+     */
+    synchronized void release(ByteBuffer slice) {
+        expungeCollectedLeases();
+        for (Iterator<Lease> it = leases.iterator(); it.hasNext(); ) {
+            Lease lease = it.next();
+            if (lease.get() == slice) {
+                it.remove();
+                lease.clear();
+                leasedBytes -= lease.buffer.capacity();
+                recycle(lease.buffer);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The capacity of the pooled buffers backing outstanding leases.
+     */
+    synchronized long leasedBytes() {
+        expungeCollectedLeases();
+        return leasedBytes;
+    }
+
+    /**
+     * Recycles the buffers of leases whose slices were dropped without being released.
+     * Nothing can read a buffer once its slice is unreachable.
+     */
+    private void expungeCollectedLeases() {
+        for (Reference<? extends ByteBuffer> ref = collected.poll(); ref != null; ref = collected.poll()) {
+            Lease lease = (Lease) ref;
+            if (leases.remove(lease)) {
+                leasedBytes -= lease.buffer.capacity();
+                recycle(lease.buffer);
+            }
+        }
+    }
+
+    private static int roundUp(int minCapacity) {
+        if (minCapacity <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        int highest = Integer.highestOneBit(minCapacity);
+        if (highest == minCapacity || highest >= (1 << 30)) {
+            return minCapacity;
+        }
+        return highest << 1;
+    }
+}
@@ -0,0 +1,98 @@
+package com.hasura;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The pooled data sources of the JDBC schemas in a model.
+ * <p>
+ * There is one data source per JDBC URL, driver and credentials, shared by every
+ * Calcite connection built from the model, so introspection and query execution reuse
+ * the same source connections instead of paying a handshake each. Connections are
+ * validated before use, retired after a maximum lifetime, and closed once idle, so
+ * that sessions to metered warehouses are not held open. The pools are configured
+ * with system properties:
+ * <ul>
+ *     <li>{@code ndc.calcite.source.maxTotal} - maximum open connections per source (default 8)</li>
+ *     <li>{@code ndc.calcite.source.minIdle} - connections kept open when idle (default 0)</li>
+ *     <li>{@code ndc.calcite.source.maxWaitMillis} - how long a borrow waits for a free connection (default 30000)</li>
+ *     <li>{@code ndc.calcite.source.maxLifetimeMillis} - age after which a connection is replaced (default 1800000)</li>
+ *     <li>{@code ndc.calcite.source.idleEvictionMillis} - idle time after which a connection is closed (default 300000)</li>
+ *     <li>{@code ndc.calcite.source.validationTimeoutSeconds} - timeout of the validity check on borrow (default 5)</li>
+ * </ul>
+ */
+final class JdbcSourcePool {
+
+    private static final Meter meter = GlobalOpenTelemetry.get().getMeter("calcite-driver");
+    private static final AttributeKey<String> STATE = AttributeKey.stringKey("state");
+    private static final Map<List<String>, BasicDataSource> sources = new ConcurrentHashMap<>();
+
+    static {
+        meter.gaugeBuilder("calcite.source_pool.connections")
+                .setDescription("Pooled source connections of JDBC schemas by state")
+                .ofLongs()
+                .buildWithCallback(measurement -> {
+                    long active = 0;
+                    long idle = 0;
+                    for (BasicDataSource source : sources.values()) {
+                        active += source.getNumActive();
+                        idle += source.getNumIdle();
+                    }
+                    measurement.record(active, Attributes.of(STATE, "active"));
+                    measurement.record(idle, Attributes.of(STATE, "idle"));
+                });
+    }
+
+    private JdbcSourcePool() {
+    }
+
+    /**
+     * Returns the shared data source for a JDBC source, creating it on first use.
+     *
+     * @param url             The JDBC URL.
+     * @param driverClassName The JDBC driver class, or {@code null} to find it by URL.
+     * @param username        The user name, or {@code null}.
+     * @param password        The password, or {@code null}.
+     * @return The pooled data source.
+     */
+    static BasicDataSource get(String url, String driverClassName, String username, String password) {
+        return sources.computeIfAbsent(Arrays.asList(url, driverClassName, username, password),
+                key -> create(url, driverClassName, username, password));
+    }
+
+    private static BasicDataSource create(String url, String driverClassName, String username, String password) {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setUrl(url);
+        if (driverClassName != null) {
+            dataSource.setDriverClassName(driverClassName);
+        }
+        dataSource.setDriverClassLoader(CalciteQuery.class.getClassLoader());
+        if (username != null) {
+            dataSource.setUsername(username);
+        }
+        if (password != null) {
+            dataSource.setPassword(password);
+        }
+        int maxTotal = Integer.getInteger("ndc.calcite.source.maxTotal", 8);
+        dataSource.setMaxTotal(maxTotal);
+        dataSource.setMaxIdle(maxTotal);
+        dataSource.setMinIdle(Math.min(maxTotal, Integer.getInteger("ndc.calcite.source.minIdle", 0)));
+        dataSource.setMaxWaitMillis(Long.getLong("ndc.calcite.source.maxWaitMillis", 30000L));
+        dataSource.setMaxConnLifetimeMillis(Long.getLong("ndc.calcite.source.maxLifetimeMillis", 1800000L));
+        dataSource.setLogExpiredConnections(false);
+        dataSource.setMinEvictableIdleTimeMillis(Long.getLong("ndc.calcite.source.idleEvictionMillis", 300000L));
+        dataSource.setTimeBetweenEvictionRunsMillis(30000L);
+        // Without a validation query the driver's Connection.isValid is used.
+        dataSource.setTestOnBorrow(true);
+        dataSource.setValidationQueryTimeout(Integer.getInteger("ndc.calcite.source.validationTimeoutSeconds", 5));
+        return dataSource;
+    }
+}
@@ -0,0 +1,173 @@
+package com.hasura;
+
+import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.rel.type.RelProtoDataType;
+import org.apache.calcite.schema.Function;
+import org.apache.calcite.schema.Schema;
+import org.apache.calcite.schema.SchemaFactory;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.SchemaVersion;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Table;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A factory for schemas that are only created by their own factory when they are first
+ * used, for example by the validator resolving a table or by introspection, instead of
+ * when the model is loaded.
+ * <p>
+ * Its operand holds the {@code factory} and {@code operand} of the wrapped schema.
+ * {@link ConfigPreprocessor} rewrites the custom schemas of a model that have
+ * {@code "lazy": true} to use it. Errors of the wrapped factory then surface on first
+ * use rather than when connecting.
+ * <p>
+ * Taking the snapshot of the root schema for a statement does not create the schema,
+ * but preparing a statement that refers to one of its tables does, including the
+ * warm-up queries of the model.
+ */
+public class LazySchemaFactory implements SchemaFactory {
+
+    public static final LazySchemaFactory INSTANCE = new LazySchemaFactory();
+
+    // Operand entries Calcite adds for every custom schema, passed on to the wrapped factory.
+    private static final String[] MODEL_OPERAND_KEYS = {"modelUri", "baseDirectory"};
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Schema create(SchemaPlus parentSchema, String name, Map<String, Object> operand) {
+        String factory = (String) operand.get("factory");
+        Map<String, Object> schemaOperand = new LinkedHashMap<>();
+        if (operand.get("operand") instanceof Map) {
+            schemaOperand.putAll((Map<String, Object>) operand.get("operand"));
+        }
+        for (String key : MODEL_OPERAND_KEYS) {
+            if (operand.containsKey(key)) {
+                schemaOperand.putIfAbsent(key, operand.get(key));
+            }
+        }
+        return new LazySchema(parentSchema, name, factory, schemaOperand);
+    }
+
+    /**
+     * A schema that creates the schema it stands for on first use and delegates to it.
+     * <p>
+     * It stays in the schema tree in place of the wrapped schema, snapshots included, so
+     * generated code reaches the wrapped schema through {@link #delegate()}.
+     */
+    public static class LazySchema implements Schema {
+        private final SchemaPlus parentSchema;
+        private final String name;
+        private final String factory;
+        private final Map<String, Object> operand;
+        private volatile Schema delegate;
+
+        LazySchema(SchemaPlus parentSchema, String name, String factory, Map<String, Object> operand) {
+            this.parentSchema = parentSchema;
+            this.name = name;
+            this.factory = factory;
+            this.operand = operand;
+        }
+
+        private LazySchema(LazySchema schema, Schema delegate) {
+            this(schema.parentSchema, schema.name, schema.factory, schema.operand);
+            this.delegate = delegate;
+        }
+
+        /**
+         * @return The wrapped schema, created by its factory on the first call.
+         */
+        public Schema delegate() {
+            Schema schema = delegate;
+            if (schema == null) {
+                synchronized (this) {
+                    schema = delegate;
+                    if (schema == null) {
+                        schema = AvaticaUtils.instantiatePlugin(SchemaFactory.class, factory)
+                                .create(parentSchema, name, operand);
+                        delegate = schema;
+                    }
+                }
+            }
+            return schema;
+        }
+
+        @Override
+        public @Nullable Table getTable(String name) {
+            return delegate().getTable(name);
+        }
+
+        @Override
+        public Set<String> getTableNames() {
+            return delegate().getTableNames();
+        }
+
+        @Override
+        public @Nullable RelProtoDataType getType(String name) {
+            return delegate().getType(name);
+        }
+
+        @Override
+        public Set<String> getTypeNames() {
+            return delegate().getTypeNames();
+        }
+
+        @Override
+        public Collection<Function> getFunctions(String name) {
+            return delegate().getFunctions(name);
+        }
+
+        @Override
+        public Set<String> getFunctionNames() {
+            return delegate().getFunctionNames();
+        }
+
+        @Override
+        public @Nullable Schema getSubSchema(String name) {
+            return delegate().getSubSchema(name);
+        }
+
+        @Override
+        public Set<String> getSubSchemaNames() {
+            return delegate().getSubSchemaNames();
+        }
+
+        /**
+         * Refers to the wrapped schema through this one, because the schema tree holds this
+         * schema and the wrapped schema's own expression would unwrap it to its own class.
+         */
+        @Override
+        public Expression getExpression(@Nullable SchemaPlus parentSchema, String name) {
+            requireNonNull(parentSchema, "parentSchema");
+            Expression lazy = Schemas.subSchemaExpression(parentSchema, name, LazySchema.class);
+            return Expressions.convert_(Expressions.call(lazy, "delegate"), delegate().getClass());
+        }
+
+        /**
+         * @return Whether the wrapped schema is mutable; {@code true} until it has been created.
+         */
+        @Override
+        public boolean isMutable() {
+            Schema schema = delegate;
+            return schema == null || schema.isMutable();
+        }
+
+        /**
+         * @return This schema until the wrapped schema has been created, then a schema
+         * wrapping its snapshot.
+         */
+        @Override
+        public Schema snapshot(SchemaVersion version) {
+            Schema schema = delegate;
+            return schema == null ? this : new LazySchema(this, schema.snapshot(version));
+        }
+    }
+}
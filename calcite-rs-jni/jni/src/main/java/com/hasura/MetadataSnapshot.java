@@ -0,0 +1,234 @@
+package com.hasura;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk copy of the introspected table metadata of a model, so that a restart
+ * with an unchanged model does not have to introspect every schema again.
+ * <p>
+ * A snapshot is keyed by the hash of the preprocessed model and the versions of the
+ * source databases and drivers that produced it; a changed model, database or driver
+ * simply misses. Every sub-schema carries a signature of its source metadata, so that
+ * a loaded snapshot can be checked for changes one sub-schema at a time. Snapshots are
+ * written to the directory named by the {@code ndc.calcite.metadataSnapshotDir}
+ * system property (default {@code ndc-calcite-metadata} in the temp directory).
+ * <p>
+ * Introspection results are also kept by version, the hash of their content, so that
+ * the changes since a version a client has seen can be computed. The most recent
+ * {@code ndc.calcite.metadataSnapshot.versions} (default {@value #DEFAULT_RETAINED_VERSIONS})
+ * versions are retained in memory, and also on disk when snapshots are enabled.
+ */
+class MetadataSnapshot {
+
+    private static final Logger logger = LogManager.getLogger(MetadataSnapshot.class);
+    private static final Gson gson = new Gson();
+    private static final Type ENTRIES_TYPE = new TypeToken<List<SchemaEntry>>() {}.getType();
+
+    // Bump when the layout of TableMetadata or ColumnMetadata changes.
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * The introspected tables of one sub-schema, with the signature of the source
+     * metadata they were introspected from, or {@code null} if it was not taken.
+     */
+    static class SchemaEntry {
+        final String catalog;
+        final String schema;
+        final List<TableMetadata> tables;
+        final String signature;
+
+        SchemaEntry(String catalog, String schema, List<TableMetadata> tables, String signature) {
+            this.catalog = catalog;
+            this.schema = schema;
+            this.tables = tables;
+            this.signature = signature;
+        }
+    }
+
+    static final int DEFAULT_RETAINED_VERSIONS = 8;
+
+    private static final Pattern VERSION = Pattern.compile("[0-9a-f]{64}");
+
+    // The retained versions, least recently used first.
+    private static final Map<String, List<SchemaEntry>> versions = new LinkedHashMap<String, List<SchemaEntry>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<SchemaEntry>> eldest) {
+            return size() > retainedVersions();
+        }
+    };
+
+    private final Path path;
+
+    /**
+     * @param modelVersion   The hash of the preprocessed model.
+     * @param sourceVersions The names and versions of the databases and drivers the metadata is read from.
+     */
+    MetadataSnapshot(String modelVersion, String sourceVersions) {
+        String key = Hashing.sha256()
+                .hashString(FORMAT_VERSION + "\n" + modelVersion + "\n" + sourceVersions, StandardCharsets.UTF_8)
+                .toString();
+        this.path = directory().resolve(key + ".json");
+    }
+
+    private static Path directory() {
+        return Paths.get(System.getProperty("ndc.calcite.metadataSnapshotDir",
+                Paths.get(System.getProperty("java.io.tmpdir"), "ndc-calcite-metadata").toString()));
+    }
+
+    private static Path versionsDirectory() {
+        return directory().resolve("versions");
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @return The snapshot's schemas, or {@code null} if there is no usable snapshot.
+     */
+    List<SchemaEntry> load() {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, ENTRIES_TYPE);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable metadata snapshot " + path + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the snapshot.
+     *
+     * @param schemas The introspected schemas.
+     */
+    void save(List<SchemaEntry> schemas) {
+        try {
+            write(path, gson.toJson(schemas, ENTRIES_TYPE));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to write metadata snapshot " + path + ": " + e);
+        }
+    }
+
+    private static int retainedVersions() {
+        return Math.max(1, Integer.getInteger("ndc.calcite.metadataSnapshot.versions", DEFAULT_RETAINED_VERSIONS));
+    }
+
+    /**
+     * Keeps introspected metadata under its version, dropping the oldest versions beyond
+     * the retained number.
+     *
+     * @param schemas The introspected schemas.
+     * @param persist Whether to also write the version to disk, so that it survives a restart.
+     * @return The version, which is the same for identical metadata.
+     */
+    static String saveVersion(List<SchemaEntry> schemas, boolean persist) {
+        String json = gson.toJson(schemas, ENTRIES_TYPE);
+        String version = Hashing.sha256().hashString(json, StandardCharsets.UTF_8).toString();
+        synchronized (versions) {
+            versions.put(version, schemas);
+        }
+        if (!persist) {
+            return version;
+        }
+        Path versionPath = versionsDirectory().resolve(version + ".json");
+        try {
+            if (Files.exists(versionPath)) {
+                // Mark it as the most recent version.
+                Files.setLastModifiedTime(versionPath, FileTime.fromMillis(System.currentTimeMillis()));
+            } else {
+                write(versionPath, json);
+            }
+            pruneVersions();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to write metadata version " + versionPath + ": " + e);
+        }
+        return version;
+    }
+
+    /**
+     * Reads the metadata kept under a version.
+     *
+     * @param version A version returned by {@link #saveVersion(List, boolean)}.
+     * @param persist Whether to look for the version on disk if it is not retained in memory.
+     * @return The schemas, or {@code null} if the version is not retained.
+     */
+    static List<SchemaEntry> loadVersion(String version, boolean persist) {
+        if (version == null || !VERSION.matcher(version).matches()) {
+            return null;
+        }
+        synchronized (versions) {
+            List<SchemaEntry> schemas = versions.get(version);
+            if (schemas != null || !persist) {
+                return schemas;
+            }
+        }
+        Path versionPath = versionsDirectory().resolve(version + ".json");
+        try (Reader reader = Files.newBufferedReader(versionPath, StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, ENTRIES_TYPE);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable metadata version " + versionPath + ": " + e);
+            return null;
+        }
+    }
+
+    private static void pruneVersions() throws IOException {
+        int retained = retainedVersions();
+        List<Path> versions;
+        try (Stream<Path> files = Files.list(versionsDirectory())) {
+            versions = files.filter(file -> file.getFileName().toString().endsWith(".json")).collect(Collectors.toList());
+        }
+        if (versions.size() <= retained) {
+            return;
+        }
+        Map<Path, FileTime> modified = new HashMap<>();
+        for (Path version : versions) {
+            modified.put(version, Files.getLastModifiedTime(version));
+        }
+        versions.sort(Comparator.comparing(modified::get));
+        for (Path version : versions.subList(0, versions.size() - retained)) {
+            Files.deleteIfExists(version);
+        }
+    }
+
+    /**
+     * Writes a file next to its destination and moves it into place, so a concurrent
+     * reader never sees a partial file.
+     */
+    private static void write(Path destination, String json) throws IOException {
+        Files.createDirectories(destination.getParent());
+        Path temp = Files.createTempFile(destination.getParent(), "snapshot", ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(json);
+            }
+            Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
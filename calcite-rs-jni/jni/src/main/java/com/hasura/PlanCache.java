@@ -0,0 +1,203 @@
+package com.hasura;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.prepare.CalcitePrepareImpl;
+
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A process-wide cache of Calcite's optimized plans, shared by every connection
+ * and every {@link CalciteQuery} in the JVM.
+ * <p>
+ * Connections are created with a {@link CachingPrepare} for their model version.
+ * When Calcite asks it to prepare a SQL string it first looks for a signature
+ * already planned for the same model version, {@link SqlFingerprint} and default
+ * schema, and only parses, validates and optimizes on a miss. The signature
+ * carries the compiled Enumerable/Bindable code, so a hit skips planning entirely.
+ * <p>
+ * Entries are keyed by model version, so every connection that can hit an entry
+ * was built from the same model and sees equivalent schemas. A cached signature is
+ * handed out rebound to the root schema snapshot of the connection preparing it, so
+ * the statement executes against that connection's schemas rather than those of the
+ * connection that planned it.
+ * <p>
+ * Entries are evicted by an estimate of their memory cost, bounded by the
+ * {@code ndc.calcite.planCacheMaxBytes} system property (default 64 MB, zero
+ * disables the cache). The entries planned on a connection are dropped with
+ * {@link #release(Connection)} when that connection is closed, so that they do not
+ * keep its schemas reachable. Plans of a model version that other connections still
+ * use stay cached.
+ */
+class PlanCache {
+
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // Rough cost of a planned statement beyond its SQL text: rel tree, generated class and metadata.
+    private static final int BASE_PLAN_COST = 32 * 1024;
+    private static final int COLUMN_COST = 512;
+
+    private static final Meter meter = GlobalOpenTelemetry.get().getMeter("calcite-driver");
+    private static final LongCounter hits = meter.counterBuilder("calcite.plan_cache.hits")
+            .setDescription("Statements prepared from a cached plan").build();
+    private static final LongCounter misses = meter.counterBuilder("calcite.plan_cache.misses")
+            .setDescription("Statements that had to be planned").build();
+
+    private static final long maxBytes = Long.getLong("ndc.calcite.planCacheMaxBytes", DEFAULT_MAX_BYTES);
+    private static final Cache<Key, Planned> cache = CacheBuilder.newBuilder()
+            .maximumWeight(Math.max(0, maxBytes))
+            .weigher((Key key, Planned planned) -> weigh(key, planned.signature))
+            .build();
+
+    private PlanCache() {
+    }
+
+    /**
+     * Returns a prepare factory for connections built from the given model.
+     *
+     * @param modelVersion The version of the model the connection is created from.
+     * @return A factory to install with {@code Driver.withPrepareFactory}.
+     */
+    static Supplier<CalcitePrepare> prepareFactory(String modelVersion) {
+        return () -> new CachingPrepare(modelVersion);
+    }
+
+    /**
+     * Drops every cached plan that was planned on the given connection. Called when the
+     * connection is closed.
+     *
+     * @param connection A Calcite connection created with {@link #prepareFactory(String)}.
+     */
+    static void release(Connection connection) {
+        CalciteSchema rootSchema;
+        try {
+            rootSchema = connection.unwrap(CalciteConnection.class).getRootSchema().unwrap(CalciteSchema.class);
+        } catch (SQLException e) {
+            return;
+        }
+        cache.asMap().values().removeIf(planned -> planned.plannedOn == rootSchema);
+    }
+
+    private static int weigh(Key key, CalcitePrepare.CalciteSignature<?> signature) {
+        long cost = BASE_PLAN_COST + 2L * key.sql.sql().length() + (long) COLUMN_COST * signature.columns.size();
+        return (int) Math.min(Integer.MAX_VALUE, cost);
+    }
+
+    /**
+     * A {@link CalcitePrepareImpl} that consults the plan cache before planning SQL.
+     */
+    static class CachingPrepare extends CalcitePrepareImpl {
+
+        private final String modelVersion;
+
+        CachingPrepare(String modelVersion) {
+            this.modelVersion = modelVersion;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> CalciteSignature<T> prepareSql(Context context, Query<T> query, Type elementType, long maxRowCount) {
+            if (maxBytes <= 0 || query.sql == null) {
+                return super.prepareSql(context, query, elementType, maxRowCount);
+            }
+            Key key = new Key(modelVersion, SqlFingerprint.of(query.sql), context.getDefaultSchemaPath(), elementType, maxRowCount);
+            Planned planned = cache.getIfPresent(key);
+            if (planned != null) {
+                hits.add(1);
+                return new BoundSignature<>((CalciteSignature<T>) planned.signature, context.getRootSchema());
+            }
+            misses.add(1);
+            CalciteSignature<T> signature = super.prepareSql(context, query, elementType, maxRowCount);
+            // DDL and DML run side effects while being prepared, so only queries are reusable.
+            if (signature.statementType == Meta.StatementType.SELECT) {
+                cache.put(key, new Planned(signature, context.getMutableRootSchema()));
+            }
+            return signature;
+        }
+    }
+
+    /**
+     * A cached signature and the root schema of the connection it was planned on.
+     */
+    private static final class Planned {
+        final CalcitePrepare.CalciteSignature<?> signature;
+        final CalciteSchema plannedOn;
+
+        Planned(CalcitePrepare.CalciteSignature<?> signature, CalciteSchema plannedOn) {
+            this.signature = signature;
+            this.plannedOn = plannedOn;
+        }
+    }
+
+    /**
+     * A cached signature bound to another root schema. Calcite builds the data context
+     * of an execution from the signature's root schema, so the generated code resolves
+     * schemas and data sources through the executing connection. The compiled code and
+     * the row limit are those of the cached signature.
+     */
+    static final class BoundSignature<T> extends CalcitePrepare.CalciteSignature<T> {
+        private final CalcitePrepare.CalciteSignature<T> planned;
+
+        BoundSignature(CalcitePrepare.CalciteSignature<T> planned, CalciteSchema rootSchema) {
+            super(planned.sql, planned.parameters, planned.internalParameters, planned.rowType, planned.columns,
+                    planned.cursorFactory, rootSchema, planned.getCollationList(), -1, null, planned.statementType);
+            this.planned = planned;
+        }
+
+        @Override
+        public Enumerable<T> enumerable(DataContext dataContext) {
+            return planned.enumerable(dataContext);
+        }
+    }
+
+    private static final class Key {
+        final String modelVersion;
+        final SqlFingerprint sql;
+        final List<String> defaultSchemaPath;
+        final Type elementType;
+        final long maxRowCount;
+
+        Key(String modelVersion, SqlFingerprint sql, List<String> defaultSchemaPath, Type elementType, long maxRowCount) {
+            this.modelVersion = modelVersion;
+            this.sql = sql;
+            this.defaultSchemaPath = defaultSchemaPath;
+            this.elementType = elementType;
+            this.maxRowCount = maxRowCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return maxRowCount == key.maxRowCount
+                    && modelVersion.equals(key.modelVersion)
+                    && sql.equals(key.sql)
+                    && Objects.equals(defaultSchemaPath, key.defaultSchemaPath)
+                    && Objects.equals(elementType, key.elementType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(modelVersion, sql, defaultSchemaPath, elementType, maxRowCount);
+        }
+    }
+}
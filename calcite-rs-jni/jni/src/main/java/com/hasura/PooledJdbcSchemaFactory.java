@@ -0,0 +1,41 @@
+package com.hasura;
+
+import org.apache.calcite.adapter.jdbc.JdbcSchema;
+import org.apache.calcite.avatica.AvaticaUtils;
+import org.apache.calcite.schema.Schema;
+import org.apache.calcite.schema.SchemaFactory;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.sql.SqlDialectFactory;
+import org.apache.calcite.sql.SqlDialectFactoryImpl;
+
+import java.util.Map;
+
+/**
+ * A factory for JDBC schemas whose connections come from a {@link JdbcSourcePool}.
+ * <p>
+ * It takes the same keys as a schema of type {@code jdbc}, as its operand.
+ * {@link ConfigPreprocessor} rewrites the JDBC schemas of a model to use it.
+ */
+public class PooledJdbcSchemaFactory implements SchemaFactory {
+
+    public static final PooledJdbcSchemaFactory INSTANCE = new PooledJdbcSchemaFactory();
+
+    @Override
+    public Schema create(SchemaPlus parentSchema, String name, Map<String, Object> operand) {
+        String dialectFactoryName = (String) operand.get("sqlDialectFactory");
+        SqlDialectFactory dialectFactory = dialectFactoryName == null || dialectFactoryName.isEmpty()
+                ? SqlDialectFactoryImpl.INSTANCE
+                : AvaticaUtils.instantiatePlugin(SqlDialectFactory.class, dialectFactoryName);
+        return JdbcSchema.create(
+                parentSchema,
+                name,
+                JdbcSourcePool.get(
+                        (String) operand.get("jdbcUrl"),
+                        (String) operand.get("jdbcDriver"),
+                        (String) operand.get("jdbcUser"),
+                        (String) operand.get("jdbcPassword")),
+                dialectFactory,
+                (String) operand.get("jdbcCatalog"),
+                (String) operand.get("jdbcSchema"));
+    }
+}
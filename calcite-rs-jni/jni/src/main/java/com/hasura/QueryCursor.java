@@ -0,0 +1,126 @@
+package com.hasura;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * An open result set that is read in bounded chunks, so a large result never has to
+ * be held in memory at once.
+ * <p>
+ * The cursor owns the result set and closes it, then runs the given release action
+ * for the statement and connection it was read from. This happens when the last row
+ * has been fetched or when the cursor is closed.
+ */
+class QueryCursor implements AutoCloseable {
+
+    private final ResultSet resultSet;
+    private final AutoCloseable release;
+    private final boolean jsonObjectRows;
+    private final ResultSetJsonWriter rowWriter;
+    private volatile long lastAccessNanos = System.nanoTime();
+    private boolean rowPending;
+    private boolean exhausted;
+    private boolean closed;
+
+    /**
+     * @param resultSet      The result set to read.
+     * @param jsonObjectRows Whether each row is a single column holding a JSON object as a string.
+     * @param sqliteFlag     Whether the rows come from SQLite and need its date handling.
+     * @param release        Hands the statement and connection back once the result set is closed.
+     */
+    QueryCursor(ResultSet resultSet, boolean jsonObjectRows, boolean sqliteFlag, AutoCloseable release) throws SQLException {
+        this.resultSet = resultSet;
+        this.release = release;
+        this.jsonObjectRows = jsonObjectRows;
+        this.rowWriter = jsonObjectRows ? null : new ResultSetJsonWriter(resultSet, sqliteFlag);
+    }
+
+    /**
+     * Reads the next chunk of rows as {@code {"rows":[...],"has_more":true|false}}.
+     * <p>
+     * A chunk holds at most {@code maxRows} rows. It stops at the first row that takes
+     * its encoded size to {@code maxBytes} or more, so it exceeds that size by at most
+     * one row. Every chunk holds at least one row unless the result is exhausted. The
+     * cursor closes itself once it returns a chunk without more rows.
+     *
+     * @param maxRows  The maximum number of rows in the chunk.
+     * @param maxBytes The size in bytes after which no further rows are added.
+     * @return The UTF-8 JSON chunk.
+     */
+    synchronized String fetch(int maxRows, long maxBytes) throws Exception {
+        if (closed) {
+            throw new SQLException("Cursor is closed");
+        }
+        lastAccessNanos = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        JsonWriter writer = ResultSetJsonWriter.newJsonWriter(out);
+        writer.beginObject();
+        writer.name("rows");
+        writer.beginArray();
+        int rows = 0;
+        while (rows < Math.max(1, maxRows) && advance()) {
+            if (jsonObjectRows) {
+                writer.value(resultSet.getString(1));
+            } else {
+                rowWriter.writeRow(writer);
+            }
+            rowPending = false;
+            rows++;
+            writer.flush();
+            if (out.size() >= maxBytes) {
+                break;
+            }
+        }
+        writer.endArray();
+        boolean hasMore = advance();
+        writer.name("has_more").value(hasMore);
+        writer.endObject();
+        writer.flush();
+        if (!hasMore) {
+            close();
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Positions the result set on a row that has not been written yet.
+     *
+     * @return Whether such a row exists.
+     */
+    private boolean advance() throws SQLException {
+        if (!rowPending && !exhausted) {
+            rowPending = resultSet.next();
+            exhausted = !rowPending;
+        }
+        return rowPending;
+    }
+
+    /**
+     * @return How long the cursor has gone without a fetch, in nanoseconds.
+     */
+    long idleNanos() {
+        return System.nanoTime() - lastAccessNanos;
+    }
+
+    /**
+     * @return Whether the cursor has been closed, either explicitly or after its last row.
+     */
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (AutoCloseable ignored = release) {
+            resultSet.close();
+        }
+    }
+}
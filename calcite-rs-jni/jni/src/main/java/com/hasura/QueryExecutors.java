@@ -0,0 +1,63 @@
+package com.hasura;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors used to run queries off the calling JNI thread.
+ * <p>
+ * The jar is compiled for Java 11, but the connector image runs a newer JVM. When
+ * virtual threads are available they are used, so that many slow upstream queries
+ * can wait concurrently without holding a platform thread each. Otherwise a cached
+ * pool of daemon threads is used.
+ */
+final class QueryExecutors {
+
+    private static final Logger logger = LogManager.getLogger(QueryExecutors.class);
+
+    private QueryExecutors() {
+    }
+
+    /**
+     * Creates an executor that starts a new (virtual, if supported) thread per task.
+     *
+     * @param name The prefix for the names of platform threads.
+     * @return An unbounded task executor.
+     */
+    static ExecutorService newTaskExecutor(String name) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.debug("Virtual threads are not available, using platform threads for " + name);
+            return Executors.newCachedThreadPool(daemonThreadFactory(name));
+        }
+    }
+
+    /**
+     * Creates a fixed-size executor of daemon platform threads.
+     *
+     * @param name    The prefix for the thread names.
+     * @param threads The number of threads.
+     * @return A bounded executor.
+     */
+    static ExecutorService newFixedExecutor(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, daemonThreadFactory(name));
+    }
+
+    static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(CalciteQuery.class.getClassLoader());
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package com.hasura;
+
+import org.apache.arrow.adapter.jdbc.ArrowVectorIterator;
+import org.apache.arrow.adapter.jdbc.JdbcToArrow;
+import org.apache.arrow.adapter.jdbc.JdbcToArrowConfig;
+import org.apache.arrow.adapter.jdbc.JdbcToArrowConfigBuilder;
+import org.apache.arrow.adapter.jdbc.JdbcToArrowUtils;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * An {@link ArrowReader} that produces record batches from an open JDBC result set.
+ * <p>
+ * Batches are built by the Arrow JDBC adapter and handed to the reader's root by
+ * transferring buffer ownership, so the column data is never copied. The reader
+ * owns the result set and closes it, then runs the given release action for the
+ * statement and connection it was read from. This happens when the consumer of
+ * an exported C stream releases it, or when the reader is closed because the export
+ * failed; the release action runs only once.
+ */
+class ResultSetArrowReader extends ArrowReader {
+
+    private final ResultSet resultSet;
+    private final AutoCloseable release;
+    private final Schema schema;
+    private final ArrowVectorIterator iterator;
+    private boolean closed;
+
+    ResultSetArrowReader(BufferAllocator allocator, ResultSet resultSet, AutoCloseable release) throws SQLException, IOException {
+        super(allocator);
+        this.resultSet = resultSet;
+        this.release = release;
+        JdbcToArrowConfig config = new JdbcToArrowConfigBuilder(allocator, JdbcToArrowUtils.getUtcCalendar())
+                .setTargetBatchSize(JdbcToArrowConfig.DEFAULT_TARGET_BATCH_SIZE)
+                .build();
+        this.schema = JdbcToArrowUtils.jdbcToArrowSchema(resultSet.getMetaData(), config);
+        this.iterator = JdbcToArrow.sqlToArrowVectorIterator(resultSet, config);
+    }
+
+    @Override
+    public boolean loadNextBatch() throws IOException {
+        prepareLoadNextBatch();
+        if (!iterator.hasNext()) {
+            return false;
+        }
+        try (VectorSchemaRoot batch = iterator.next();
+             ArrowRecordBatch recordBatch = new VectorUnloader(batch).getRecordBatch()) {
+            loadRecordBatch(recordBatch);
+        }
+        return true;
+    }
+
+    @Override
+    public long bytesRead() {
+        return 0;
+    }
+
+    @Override
+    protected void closeReadSource() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        iterator.close();
+        try (AutoCloseable ignored = release) {
+            resultSet.close();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    protected Schema readSchema() {
+        return schema;
+    }
+}
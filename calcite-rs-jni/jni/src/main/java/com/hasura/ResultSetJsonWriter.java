@@ -0,0 +1,248 @@
+package com.hasura;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import org.apache.calcite.avatica.util.ArrayImpl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Streams the rows of a {@link ResultSet} as a compact JSON array of objects.
+ * <p>
+ * Each row is written straight from the result set into the output, so no
+ * per-row map or intermediate list is built. Values are rendered exactly as
+ * the connector expects them: dates and timestamps as RFC 3339 strings in UTC,
+ * Avatica arrays as JSON arrays, and nulls are always serialized.
+ * <p>
+ * The column labels and one {@link ColumnEncoder} per column are resolved once
+ * from the result set metadata. Encoders for primitive JDBC types read values
+ * through the primitive getters and {@link ResultSet#wasNull()}, so the row loop
+ * does not box or inspect values for those columns.
+ */
+class ResultSetJsonWriter {
+
+    // Java's inbuilt DateTimeFormatter doesn't have any predefined format for RFC 3339
+    private static final DateTimeFormatter RFC_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ENGLISH).withZone(ZoneId.of("UTC"));
+    private static final DateTimeFormatter RFC_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.ENGLISH).withZone(ZoneId.of("UTC"));
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("^\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}$");
+    private static final Gson gson = new GsonBuilder().serializeNulls().create();
+
+    /**
+     * Writes the value of one column of the current row.
+     */
+    private interface ColumnEncoder {
+        void write(ResultSet resultSet, JsonWriter writer) throws SQLException, IOException;
+    }
+
+    private final ResultSet resultSet;
+    private final String[] labels;
+    private final ColumnEncoder[] encoders;
+
+    /**
+     * Creates a writer for the given result set.
+     *
+     * @param resultSet  The result set to stream. It is not closed by this writer.
+     * @param sqliteFlag Whether SQLite style "yyyy-MM-dd HH:mm:ss" strings in date columns
+     *                   should be rewritten as RFC 3339 timestamps.
+     * @throws SQLException If the result set metadata cannot be read.
+     */
+    ResultSetJsonWriter(ResultSet resultSet, boolean sqliteFlag) throws SQLException {
+        this.resultSet = resultSet;
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        this.labels = new String[columnCount];
+        this.encoders = new ColumnEncoder[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+            boolean sqliteDate = sqliteFlag && labels[i].toLowerCase().contains("date");
+            encoders[i] = encoderFor(metaData.getColumnType(i + 1), i + 1, sqliteDate);
+        }
+    }
+
+    /**
+     * Opens a compact JSON writer over the given stream, encoding as UTF-8.
+     *
+     * @param out The stream to write to.
+     * @return A JSON writer honouring the null handling used for query results.
+     * @throws IOException If the writer cannot be created.
+     */
+    static JsonWriter newJsonWriter(OutputStream out) throws IOException {
+        return gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes every remaining row of the result set as a JSON array.
+     *
+     * @param out The stream receiving the UTF-8 encoded JSON.
+     * @return The number of rows written.
+     */
+    int writeAll(OutputStream out) throws SQLException, IOException {
+        JsonWriter writer = newJsonWriter(out);
+        int rowCount = 0;
+        writer.beginArray();
+        while (resultSet.next()) {
+            writeRow(writer);
+            rowCount++;
+        }
+        writer.endArray();
+        writer.flush();
+        return rowCount;
+    }
+
+    /**
+     * Writes the current row of the result set as a JSON object.
+     *
+     * @param writer The JSON writer to append the row to.
+     */
+    void writeRow(JsonWriter writer) throws SQLException, IOException {
+        writer.beginObject();
+        for (int i = 0; i < labels.length; i++) {
+            writer.name(labels[i]);
+            encoders[i].write(resultSet, writer);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Chooses the encoder for a column from its JDBC type.
+     *
+     * @param jdbcType   The {@link Types} constant reported by the metadata.
+     * @param column     The 1-based column index.
+     * @param sqliteDate Whether the SQLite date heuristic applies to this column.
+     * @return The encoder used for this column in every row.
+     */
+    private static ColumnEncoder encoderFor(int jdbcType, int column, boolean sqliteDate) {
+        switch (jdbcType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return (rs, writer) -> {
+                    int value = rs.getInt(column);
+                    if (rs.wasNull()) {
+                        writer.nullValue();
+                    } else {
+                        writer.value(value);
+                    }
+                };
+            case Types.BIGINT:
+                return (rs, writer) -> {
+                    long value = rs.getLong(column);
+                    if (rs.wasNull()) {
+                        writer.nullValue();
+                    } else {
+                        writer.value(value);
+                    }
+                };
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return (rs, writer) -> {
+                    double value = rs.getDouble(column);
+                    if (rs.wasNull()) {
+                        writer.nullValue();
+                    } else {
+                        writer.value(value);
+                    }
+                };
+            case Types.REAL:
+                // Written through Float so the digits match the float value rather than its widened double.
+                return (rs, writer) -> {
+                    float value = rs.getFloat(column);
+                    if (rs.wasNull()) {
+                        writer.nullValue();
+                    } else {
+                        writer.value(Float.valueOf(value));
+                    }
+                };
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return (rs, writer) -> {
+                    boolean value = rs.getBoolean(column);
+                    if (rs.wasNull()) {
+                        writer.nullValue();
+                    } else {
+                        writer.value(value);
+                    }
+                };
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return (rs, writer) -> writer.value(rs.getBigDecimal(column));
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                if (sqliteDate) {
+                    return (rs, writer) -> {
+                        String value = rs.getString(column);
+                        if (value != null && TIMESTAMP_PATTERN.matcher(value).matches()) {
+                            value = value.replace(" ", "T");
+                        }
+                        writer.value(value);
+                    };
+                }
+                return (rs, writer) -> writer.value(rs.getString(column));
+            case Types.DATE:
+                return (rs, writer) -> {
+                    java.sql.Date value = rs.getDate(column);
+                    if (value == null) {
+                        writer.nullValue();
+                    } else {
+                        writer.value(RFC_DATE_FORMAT.format(Instant.ofEpochMilli(value.getTime())));
+                    }
+                };
+            case Types.TIMESTAMP:
+                return (rs, writer) -> {
+                    java.sql.Timestamp value = rs.getTimestamp(column);
+                    if (value == null) {
+                        writer.nullValue();
+                    } else {
+                        writer.value(RFC_FORMAT.format(Instant.ofEpochMilli(value.getTime())));
+                    }
+                };
+            default:
+                return (rs, writer) -> writeObject(writer, rs.getObject(column), sqliteDate);
+        }
+    }
+
+    /**
+     * Writes a value whose column type has no specialized encoder.
+     */
+    private static void writeObject(JsonWriter writer, Object value, boolean sqliteDate) throws SQLException, IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof java.sql.Date) {
+            writer.value(RFC_DATE_FORMAT.format(Instant.ofEpochMilli(((java.sql.Date) value).getTime())));
+        } else if (value instanceof java.sql.Timestamp) {
+            writer.value(RFC_FORMAT.format(Instant.ofEpochMilli(((java.sql.Timestamp) value).getTime())));
+        } else if (value instanceof ArrayImpl) {
+            Object array = ((ArrayImpl) value).getArray();
+            if (array == null) {
+                writer.nullValue();
+            } else {
+                gson.toJson(array, array.getClass(), writer);
+            }
+        } else if (value instanceof String) {
+            String string = (String) value;
+            if (sqliteDate && TIMESTAMP_PATTERN.matcher(string).matches()) {
+                string = string.replace(" ", "T");
+            }
+            writer.value(string);
+        } else {
+            gson.toJson(value, value.getClass(), writer);
+        }
+    }
+}
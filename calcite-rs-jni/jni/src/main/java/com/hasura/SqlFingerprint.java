@@ -0,0 +1,119 @@
+package com.hasura;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The canonical form of a parameterized SQL template and a hash of it, used to key
+ * statement and plan reuse.
+ * <p>
+ * The connector inlines every value as a marked up string, which
+ * {@link StatementPreparer} turns into a placeholder, so queries of the same shape
+ * differ only in their bound values and in incidental whitespace. The canonical form
+ * collapses whitespace outside quoted literals, identifiers and comments, so every
+ * query of one shape maps to the same SQL text, and with it the same cached statement
+ * and plan. The canonical text is what gets prepared, so it must mean the same as the
+ * original. Case is preserved, because identifiers are case sensitive.
+ */
+final class SqlFingerprint {
+
+    private final String sql;
+    private final HashCode hash;
+
+    private SqlFingerprint(String sql) {
+        this.sql = sql;
+        this.hash = Hashing.murmur3_128().hashString(sql, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Computes the fingerprint of a parameterized SQL statement.
+     *
+     * @param parameterizedSql SQL with its values replaced by placeholders.
+     * @return The fingerprint of the statement's canonical form.
+     */
+    static SqlFingerprint of(String parameterizedSql) {
+        return new SqlFingerprint(canonicalize(parameterizedSql));
+    }
+
+    /**
+     * @return The canonical SQL text to prepare.
+     */
+    String sql() {
+        return sql;
+    }
+
+    /**
+     * Collapses each run of whitespace outside quotes and comments into a single space and
+     * trims the statement. Comments are kept as they are, including the line break that
+     * ends a {@code --} comment, so that it does not swallow the text that follows, and
+     * optimizer hints in block comments are not lost. SQL with unbalanced quotes or an
+     * unterminated block comment is returned unchanged.
+     */
+    static String canonicalize(String sql) {
+        StringBuilder canonical = new StringBuilder(sql.length());
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                // Only a line comment leaves a line break at the end, and it already separates.
+                pendingSpace = canonical.length() > 0 && canonical.charAt(canonical.length() - 1) != '\n';
+                i++;
+                continue;
+            }
+            if (pendingSpace) {
+                canonical.append(' ');
+                pendingSpace = false;
+            }
+            int end;
+            if (c == '\'' || c == '"' || c == '`') {
+                // A doubled quote inside a literal closes and reopens it, which copies the same text.
+                end = sql.indexOf(c, i + 1);
+                if (end < 0) {
+                    return sql;
+                }
+                end++;
+            } else if (sql.startsWith("--", i)) {
+                end = sql.indexOf('\n', i);
+                end = end < 0 ? sql.length() : end + 1;
+            } else if (sql.startsWith("/*", i)) {
+                end = sql.indexOf("*/", i + 2);
+                if (end < 0) {
+                    return sql;
+                }
+                end += 2;
+            } else {
+                canonical.append(c);
+                i++;
+                continue;
+            }
+            canonical.append(sql, i, end);
+            i = end;
+        }
+        return canonical.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SqlFingerprint)) {
+            return false;
+        }
+        SqlFingerprint that = (SqlFingerprint) o;
+        return hash.equals(that.hash) && sql.equals(that.sql);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash.asInt();
+    }
+
+    @Override
+    public String toString() {
+        return hash.toString();
+    }
+}
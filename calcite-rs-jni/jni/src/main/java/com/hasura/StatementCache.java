@@ -0,0 +1,150 @@
+package com.hasura;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of {@link PreparedStatement}s for one connection, keyed by the
+ * {@link SqlFingerprint} of the parameterized SQL produced by {@link StatementPreparer}.
+ * <p>
+ * Statements are borrowed for the duration of one execution and handed back with
+ * {@link #release(PreparedStatement)}. A borrowed statement is not visible to other
+ * callers, so two concurrent executions of the same SQL each get their own statement.
+ * Reusing a statement lets Calcite skip parsing, validation and planning.
+ * <p>
+ * The size is read from the {@code ndc.calcite.statementCacheSize} system property
+ * (default {@value #DEFAULT_SIZE}); a size of zero disables caching.
+ */
+class StatementCache implements AutoCloseable {
+
+    static final int DEFAULT_SIZE = 128;
+
+    private static final Logger logger = LogManager.getLogger(StatementCache.class);
+    private static final Meter meter = GlobalOpenTelemetry.get().getMeter("calcite-driver");
+    private static final LongCounter hits = meter.counterBuilder("calcite.statement_cache.hits")
+            .setDescription("Prepared statements reused from the cache").build();
+    private static final LongCounter misses = meter.counterBuilder("calcite.statement_cache.misses")
+            .setDescription("Prepared statements that had to be planned").build();
+    private static final LongCounter evictions = meter.counterBuilder("calcite.statement_cache.evictions")
+            .setDescription("Prepared statements closed to keep the cache within its size").build();
+
+    private final Connection connection;
+    private final int maxSize;
+    private final LinkedHashMap<SqlFingerprint, PreparedStatement> idle;
+    private final Map<PreparedStatement, SqlFingerprint> borrowed = new IdentityHashMap<>();
+
+    StatementCache(Connection connection) {
+        this(connection, Integer.getInteger("ndc.calcite.statementCacheSize", DEFAULT_SIZE));
+    }
+
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = Math.max(0, maxSize);
+        this.idle = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SqlFingerprint, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    evictions.add(1);
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Borrows a prepared statement for the given SQL, preparing it if no idle one is cached.
+     *
+     * @param sql The fingerprint of the parameterized SQL.
+     * @return A statement with no parameters bound.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    PreparedStatement borrow(SqlFingerprint sql) throws SQLException {
+        PreparedStatement statement;
+        synchronized (this) {
+            statement = idle.remove(sql);
+        }
+        if (statement != null && !statement.isClosed()) {
+            hits.add(1);
+        } else {
+            misses.add(1);
+            statement = connection.prepareStatement(sql.sql());
+        }
+        synchronized (this) {
+            borrowed.put(statement, sql);
+        }
+        return statement;
+    }
+
+    /**
+     * Returns a borrowed statement to the cache. Statements that were not borrowed from
+     * this cache, or that cannot be kept, are closed.
+     *
+     * @param statement The statement to return.
+     */
+    void release(PreparedStatement statement) {
+        SqlFingerprint sql;
+        synchronized (this) {
+            sql = borrowed.remove(statement);
+        }
+        try {
+            if (sql == null || maxSize == 0 || statement.isClosed()) {
+                statement.close();
+                return;
+            }
+            statement.clearParameters();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        PreparedStatement duplicate = null;
+        synchronized (this) {
+            if (idle.containsKey(sql)) {
+                duplicate = statement;
+            } else {
+                idle.put(sql, statement);
+            }
+        }
+        if (duplicate != null) {
+            closeQuietly(duplicate);
+        }
+    }
+
+    /**
+     * Closes every statement held by the cache, including borrowed ones.
+     */
+    @Override
+    public void close() {
+        List<PreparedStatement> statements;
+        synchronized (this) {
+            statements = new ArrayList<>(idle.values());
+            statements.addAll(borrowed.keySet());
+            idle.clear();
+            borrowed.clear();
+        }
+        for (PreparedStatement statement : statements) {
+            closeQuietly(statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.warn("Failed to close cached statement: " + e);
+        }
+    }
+}
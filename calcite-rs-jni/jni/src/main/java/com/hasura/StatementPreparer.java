@@ -1,32 +1,42 @@
 package com.hasura;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.JDBCType;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Date;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
-import java.time.temporal.ChronoField;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * The StatementPreparer class is responsible for preparing a SQL statement by replacing
- * marked up strings and indexed question marks with the actual values.
+ * marked up strings with parameter placeholders and binding the actual values.
  */
 class StatementPreparer {
 
     static String STRING_MARKER = "__UTF8__";
+    static String TYPED_MARKER = "__TYPED__";
     static String PARAM_MARKER = "?";
+    static String LIST_PREFIX = "LIST::";
+
+    // Element types a list marker may declare, by the name used in the SQL cast and in Connection.createArrayOf
+    private static final Set<String> LIST_ELEMENT_TYPES = new HashSet<>(Arrays.asList(
+            "VARCHAR", "INTEGER", "BIGINT", "DECIMAL", "DOUBLE", "BOOLEAN", "DATE", "TIMESTAMP"));
+
+    // Calcite plans an IN list of 20 or more values as a join, which the JDBC adapter does not push down.
+    static final int MAX_EXPANDED_LIST = Integer.getInteger("ndc.calcite.listParameter.maxExpanded", 16);
 
     /**
-     * Prepares a SQL statement by replacing marked up strings and indexed question marks with the actual values.
+     * Prepares a SQL statement by replacing marked up strings with placeholders and binding the actual values.
      *
      * @param input      The SQL statement to prepare.
      * @param connection The database connection.
@@ -34,253 +44,256 @@ class StatementPreparer {
      * @throws SQLException If an error occurs while preparing the statement.
      */
     public static PreparedStatement prepare(String input, Connection connection, Boolean convertDates) throws SQLException {
-        ArrayList<Object> extractedStrings = extractMarkedUpStrings(input);
-        String modifiedInput = replaceWithIndexedQuestionMarks(input, extractedStrings, convertDates);
         ArrayList<Object> extractedStringParams = new ArrayList<>();
-        modifiedInput = findParams(modifiedInput, extractedStrings, extractedStringParams);
+        String modifiedInput = parameterize(input, convertDates, extractedStringParams);
         PreparedStatement preparedStatement = connection.prepareStatement(modifiedInput);
+        bind(preparedStatement, extractedStringParams);
+        return preparedStatement;
+    }
+
+    /**
+     * Prepares a SQL statement like {@link #prepare(String, Connection, Boolean)}, but borrows the
+     * statement from a cache keyed by the fingerprint of the parameterized SQL, so queries that
+     * differ only in their marked up values share one statement and one plan. The returned
+     * statement must be handed back with {@link StatementCache#release(PreparedStatement)}
+     * instead of being closed.
+     *
+     * @param input The SQL statement to prepare.
+     * @param cache The statement cache of the connection to prepare on.
+     * @return A PreparedStatement with all extracted values bound.
+     * @throws SQLException If an error occurs while preparing the statement.
+     */
+    public static PreparedStatement prepare(String input, StatementCache cache, Boolean convertDates) throws SQLException {
+        ArrayList<Object> extractedStringParams = new ArrayList<>();
+        String modifiedInput = parameterize(input, convertDates, extractedStringParams);
+        PreparedStatement preparedStatement = cache.borrow(SqlFingerprint.of(modifiedInput));
+        try {
+            bind(preparedStatement, extractedStringParams);
+        } catch (SQLException e) {
+            cache.release(preparedStatement);
+            throw e;
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Replaces every marked up value with a {@code ?} placeholder in a single pass over
+     * the input, collecting the values to bind in placeholder order. A marker without a
+     * closing marker is left in the SQL as is.
+     * <p>
+     * Strings are marked up with {@code __UTF8__}. Their text is bound as a string, or as
+     * a date or timestamp when dates are converted, and is never read as a typed value.
+     * Values the connector emits with a type are marked up with {@code __TYPED__} instead,
+     * as {@code __TYPED__<type>::<value>__TYPED__}; see {@link #convertTypedLiteral(String)}.
+     * A marker inside a marked up value of the other kind is part of that value.
+     * <p>
+     * A typed list, {@code LIST::<type>::<json array>}, is expanded into one placeholder
+     * per value, so that the filter is planned as a disjunction the JDBC adapter pushes
+     * down to the source. The number of placeholders is rounded up to a power of two and
+     * the last value is repeated to fill them, so {@code x IN (__TYPED__LIST::INTEGER::[1,2,3]__TYPED__)}
+     * is prepared as {@code x IN (?, ?, ?, ?)} and lists of similar length share a
+     * plan. Lists that are empty or longer than {@code ndc.calcite.listParameter.maxExpanded}
+     * (default 16) become a single array parameter that is unnested instead, as in
+     * {@code x IN (SELECT * FROM UNNEST(CAST(? AS INTEGER ARRAY)))}, which Calcite
+     * evaluates itself.
+     *
+     * @param input        The SQL statement to process.
+     * @param convertDates Whether date and timestamp literals are bound as {@link Date} and {@link Timestamp}.
+     *                     Typed values are converted either way.
+     * @param params       Receives the value of each placeholder.
+     * @return The SQL statement with placeholders.
+     * @throws SQLException If a typed value is malformed.
+     */
+    static String parameterize(String input, Boolean convertDates, List<Object> params) throws SQLException {
+        int nextString = input.indexOf(STRING_MARKER);
+        int nextTyped = input.indexOf(TYPED_MARKER);
+        if (nextString < 0 && nextTyped < 0) {
+            return input;
+        }
+        StringBuilder sql = new StringBuilder(input.length());
+        int position = 0;
+        while (nextString >= 0 || nextTyped >= 0) {
+            boolean typed = nextString < 0 || nextTyped >= 0 && nextTyped < nextString;
+            String marker = typed ? TYPED_MARKER : STRING_MARKER;
+            int start = typed ? nextTyped : nextString;
+            int end = input.indexOf(marker, start + marker.length());
+            if (end < 0) {
+                break;
+            }
+            String literal = input.substring(start + marker.length(), end);
+            sql.append(input, position, start);
+            if (!typed) {
+                params.add(convertDates ? TemporalLiterals.convert(literal) : literal);
+                sql.append(PARAM_MARKER);
+            } else if (literal.startsWith(LIST_PREFIX)) {
+                appendList(ListParameter.parse(literal), sql, params);
+            } else {
+                params.add(convertTypedLiteral(literal));
+                sql.append(PARAM_MARKER);
+            }
+            position = end + marker.length();
+            if (nextString >= 0 && nextString < position) {
+                nextString = input.indexOf(STRING_MARKER, position);
+            }
+            if (nextTyped >= 0 && nextTyped < position) {
+                nextTyped = input.indexOf(TYPED_MARKER, position);
+            }
+        }
+        return sql.append(input, position, input.length()).toString();
+    }
+
+    private static void appendList(ListParameter list, StringBuilder sql, List<Object> params) {
+        int length = list.elements.length;
+        if (length == 0 || length > MAX_EXPANDED_LIST) {
+            sql.append("SELECT * FROM UNNEST(CAST(").append(PARAM_MARKER).append(" AS ").append(list.type).append(" ARRAY))");
+            params.add(list);
+            return;
+        }
+        int placeholders = Integer.highestOneBit(length) == length ? length : Integer.highestOneBit(length) << 1;
+        for (int i = 0; i < placeholders; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(PARAM_MARKER);
+            Object element = list.elements[Math.min(i, length - 1)];
+            params.add(element != null ? element : new NullParameter(JDBCType.valueOf(list.type).getVendorTypeNumber()));
+        }
+    }
 
-        for (int i = 0; i < extractedStringParams.size(); i++) {
-            Object item = extractedStringParams.get(i);
+    private static void bind(PreparedStatement preparedStatement, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object item = params.get(i);
             if (item instanceof String) {
                 preparedStatement.setString(i + 1, (String) item);
             } else if (item instanceof Timestamp) {
                 preparedStatement.setTimestamp(i + 1, (Timestamp) item);
             } else if (item instanceof Date) {
                 preparedStatement.setDate(i + 1, (Date) item);
+            } else if (item instanceof Integer) {
+                preparedStatement.setInt(i + 1, (Integer) item);
+            } else if (item instanceof Long) {
+                preparedStatement.setLong(i + 1, (Long) item);
+            } else if (item instanceof BigDecimal) {
+                preparedStatement.setBigDecimal(i + 1, (BigDecimal) item);
+            } else if (item instanceof Double) {
+                preparedStatement.setDouble(i + 1, (Double) item);
+            } else if (item instanceof Boolean) {
+                preparedStatement.setBoolean(i + 1, (Boolean) item);
+            } else if (item instanceof NullParameter) {
+                preparedStatement.setNull(i + 1, ((NullParameter) item).sqlType);
+            } else if (item instanceof ListParameter) {
+                ListParameter list = (ListParameter) item;
+                preparedStatement.setArray(i + 1, preparedStatement.getConnection().createArrayOf(list.type, list.elements));
             }
         }
-        return preparedStatement;
     }
 
-    private static String findParams(String input, ArrayList<Object> extractedStrings, ArrayList<Object> params) {
-        Pattern pattern = Pattern.compile("\\?(\\d+)\\?");
-        Matcher matcher = pattern.matcher(input);
-        StringBuffer sb = new StringBuffer();
-        while (matcher.find()) {
-            String value = matcher.group().replaceAll("\\?", "");
-            int index = Integer.parseInt(value);
-            params.add(extractedStrings.get(index));
-            matcher.appendReplacement(sb, PARAM_MARKER);
+    /**
+     * Converts a typed value, {@code INTEGER::}, {@code BIGINT::}, {@code DECIMAL::},
+     * {@code DOUBLE::} or {@code BOOLEAN::} followed by the value, to the value to bind for it.
+     *
+     * @param literal The text between the typed markers.
+     * @return The typed value.
+     * @throws SQLException If the type is unknown or the value does not parse.
+     */
+    static Object convertTypedLiteral(String literal) throws SQLException {
+        int separator = literal.indexOf("::");
+        String type = separator < 0 ? "" : literal.substring(0, separator);
+        String value = separator < 0 ? literal : literal.substring(separator + 2).trim();
+        try {
+            switch (type) {
+                case "INTEGER":
+                    return Integer.valueOf(value);
+                case "BIGINT":
+                    return Long.valueOf(value);
+                case "DECIMAL":
+                    return new BigDecimal(value);
+                case "DOUBLE":
+                    return Double.valueOf(value);
+                case "BOOLEAN":
+                    if (value.equalsIgnoreCase("true")) {
+                        return Boolean.TRUE;
+                    } else if (value.equalsIgnoreCase("false")) {
+                        return Boolean.FALSE;
+                    }
+                    break;
+                default:
+                    throw new SQLException("Unsupported typed parameter: '" + type + "'");
+            }
+        } catch (NumberFormatException e) {
+            throw new SQLException("Invalid " + type + " parameter: '" + value + "'", e);
         }
-        matcher.appendTail(sb);
-        return sb.toString();
+        throw new SQLException("Invalid " + type + " parameter: '" + value + "'");
     }
 
-    private static ArrayList<Object> extractMarkedUpStrings(String input) {
-        String marker = STRING_MARKER;
-        ArrayList<Object> extractedList = new ArrayList<>();
+    /**
+     * A null list element, bound with the SQL type of its list.
+     */
+    static final class NullParameter {
+        final int sqlType;
 
-        int startIndex = input.indexOf(marker);
-        while (startIndex != -1) {
-            int endIndex = input.indexOf(marker, startIndex + marker.length());
-            if (endIndex != -1) {
-                String extracted = input.substring(startIndex + marker.length(), endIndex);
-                extractedList.add(extracted);
-            }
-            startIndex = input.indexOf(marker, endIndex + marker.length());
+        NullParameter(int sqlType) {
+            this.sqlType = sqlType;
         }
-        return extractedList;
     }
 
     /**
-     * Replaces marked up strings with indexed question marks in the input SQL statement.
-     * But makes a special exception for UTC formatted dates, in which case it
-     * converts them to ANSI SQL dates in local time.
-     *
-     * @param input            The SQL statement to process.
-     * @param extractedStrings The list of extracted marked-up strings.
-     * @return The input SQL statement with marked up strings replaced by indexed question marks.
+     * The value of a marked up list: its element type and its converted elements.
      */
-    private static String replaceWithIndexedQuestionMarks(String input, ArrayList<Object> extractedStrings, Boolean convertDates) {
-        // Handle all RFC 3339 / ISO 8601 timestamp formats
-        // UTC with Z - with optional seconds and variable fractional seconds
-        Pattern utcZPattern = Pattern.compile("^\\d{4}-\\d{1,2}-\\d{1,2}[T\\s]\\d{1,2}:\\d{2}(:\\d{2})?(\\.\\d{1,9})?Z$");
-
-        // Timezone offset with colon (+05:00, -08:00)
-        Pattern timezoneOffsetPattern = Pattern.compile("^\\d{4}-\\d{1,2}-\\d{1,2}T\\d{1,2}:\\d{2}(:\\d{2})?(\\.\\d{1,9})?[+-]\\d{2}:\\d{2}$");
-
-        // Timezone offset without colon (+0500, -0800)
-        Pattern timezoneOffsetNoColonPattern = Pattern.compile("^\\d{4}-\\d{1,2}-\\d{1,2}T\\d{1,2}:\\d{2}(:\\d{2})?(\\.\\d{1,9})?[+-]\\d{4}$");
-
-        // Date only
-        Pattern dateOnlyPattern = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}$");
-
-        // Optional: Date + Time without timezone (assumes local time)
-        Pattern localDateTimePattern = Pattern.compile("^\\d{4}-\\d{1,2}-\\d{1,2}[T\\s]\\d{1,2}:\\d{2}(:\\d{2})?(\\.\\d{1,9})?$");
-
-        DateTimeFormatter rfcFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX");
-        DateTimeFormatter flexibleFormatter = new DateTimeFormatterBuilder()
-                .parseCaseInsensitive()
-                .appendPattern("yyyy-MM-dd")
-                .appendLiteral('T')
-                .appendPattern("HH:mm")
-                .optionalStart()
-                .appendLiteral(':')
-                .appendPattern("ss")
-                .optionalEnd()
-                .optionalStart()
-                .appendFraction(ChronoField.NANO_OF_SECOND, 1, 9, true)
-                .optionalEnd()
-                .optionalStart()
-                .appendPattern("XXX")  // Handles +05:00, Z
-                .optionalEnd()
-                .optionalStart()
-                .appendPattern("XX")   // Handles +0500
-                .optionalEnd()
-                .toFormatter();
-
-        for (int i = 0; i < extractedStrings.size(); ++i) {
-            String currentString = (String) extractedStrings.get(i);
-
-            if (convertDates) {
-                Matcher utcMatcher = utcZPattern.matcher(currentString);
-                Matcher offsetMatcher = timezoneOffsetPattern.matcher(currentString);
-                Matcher offsetNoColonMatcher = timezoneOffsetNoColonPattern.matcher(currentString);
-                Matcher dateOnlyMatcher = dateOnlyPattern.matcher(currentString);
-                Matcher localDateTimeMatcher = localDateTimePattern.matcher(currentString);
+    private static class ListParameter {
+        final String type;
+        final Object[] elements;
 
-                if (utcMatcher.matches() || offsetMatcher.matches() || offsetNoColonMatcher.matches()) {
-                    // Handle any timestamp with timezone information
-                    try {
-                        ZonedDateTime zonedDateTime = ZonedDateTime.parse(currentString, flexibleFormatter);
-                        zonedDateTime = zonedDateTime.withZoneSameInstant(ZoneOffset.UTC);
-
-                        Object convertedDateTime = createDateTimeObject(zonedDateTime, currentString);
-
-                        input = input.replace(
-                                STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                PARAM_MARKER + i + PARAM_MARKER
-                        );
-                        extractedStrings.set(i, convertedDateTime);
-                    } catch (Exception ignored) {
-                        input = input.replace(
-                                STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                PARAM_MARKER + i + PARAM_MARKER
-                        );
-                    }
-                } else if (localDateTimeMatcher.matches()) {
-                    // Handle local datetime (no timezone) - assume UTC
-                    try {
-                        LocalDateTime localDateTime = LocalDateTime.parse(currentString, flexibleFormatter);
-                        ZonedDateTime zonedDateTime = localDateTime.atZone(ZoneOffset.UTC);
-
-                        Object convertedDateTime = createDateTimeObject(zonedDateTime, currentString);
+        private ListParameter(String type, Object[] elements) {
+            this.type = type;
+            this.elements = elements;
+        }
 
-                        input = input.replace(
-                                STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                PARAM_MARKER + i + PARAM_MARKER
-                        );
-                        extractedStrings.set(i, convertedDateTime);
-                    } catch (Exception ignored) {
-                        input = input.replace(
-                                STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                PARAM_MARKER + i + PARAM_MARKER
-                        );
-                    }
-                } else if (dateOnlyMatcher.matches()) {
-                    // Handle date-only format: YYYY-MM-DD
-                    try {
-                        Date date = Date.valueOf(currentString);
-                        input = input.replace(
-                                STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                PARAM_MARKER + i + PARAM_MARKER
-                        );
-                        extractedStrings.set(i, date);
-                    } catch (Exception ignored) {
-                        input = input.replace(
-                                STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                PARAM_MARKER + i + PARAM_MARKER
-                        );
-                    }
-                } else if (currentString.startsWith("DATE::")) {
-                    // Handle DATE:: prefix
-                    try {
-                        String dateStr = currentString.replace("DATE::", "");
-                        Date date = Date.valueOf(dateStr);
-                        input = input.replace(
-                                STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                PARAM_MARKER + i + PARAM_MARKER
-                        );
-                        extractedStrings.set(i, date);
-                    } catch (Exception ignored) {
-                        input = input.replace(
-                                STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                PARAM_MARKER + i + PARAM_MARKER
-                        );
-                    }
-                } else if (currentString.startsWith("TIMESTAMP::")) {
-                    // Handle TIMESTAMP:: prefix (existing logic)
-                    String rfcDateString = currentString.replace("TIMESTAMP::", "");
-                    DateTimeFormatter RFC_1123_DATE_TIME = DateTimeFormatter.RFC_1123_DATE_TIME;
-                    DateTimeFormatter RFC_3339_DATE_TIME = new DateTimeFormatterBuilder()
-                            .parseCaseInsensitive()
-                            .appendPattern("yyyy-MM-dd'T'HH:mm:ss")
-                            .optionalStart()
-                            .appendPattern(".SSS")
-                            .optionalEnd()
-                            .appendPattern("XXX")
-                            .toFormatter();
-                    try {
-                        ZonedDateTime zonedDateTime = ZonedDateTime.parse(rfcDateString, RFC_1123_DATE_TIME);
-                        Timestamp timestamp = Timestamp.from(zonedDateTime.toInstant());
-                        input = input.replace(
-                                STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                PARAM_MARKER + i + PARAM_MARKER
-                        );
-                        extractedStrings.set(i, timestamp);
-                    } catch (Exception ignored) {
-                        try {
-                            ZonedDateTime zonedDateTime = ZonedDateTime.parse(rfcDateString, RFC_3339_DATE_TIME);
-                            Timestamp timestamp = Timestamp.from(zonedDateTime.toInstant());
-                            input = input.replace(
-                                    STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                    PARAM_MARKER + i + PARAM_MARKER
-                            );
-                            extractedStrings.set(i, timestamp);
-                        } catch (Exception ignore) {
-                            input = input.replace(
-                                    STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                                    PARAM_MARKER + i + PARAM_MARKER
-                            );
-                        }
-                    }
-                } else if (currentString.startsWith("STRING::")) {
-                    // Handle STRING:: prefix
-                    input = input.replace(
-                            STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                            PARAM_MARKER + i + PARAM_MARKER
-                    );
-                } else {
-                    // Default case - no conversion
-                    input = input.replace(
-                            STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                            PARAM_MARKER + i + PARAM_MARKER
-                    );
+        /**
+         * Parses {@code LIST::<type>::<json array>}. Every element must convert to the declared type.
+         */
+        static ListParameter parse(String literal) throws SQLException {
+            int separator = literal.indexOf("::", LIST_PREFIX.length());
+            String type = separator < 0 ? "" : literal.substring(LIST_PREFIX.length(), separator);
+            if (!LIST_ELEMENT_TYPES.contains(type)) {
+                throw new SQLException("Unsupported list parameter type: '" + type + "'");
+            }
+            try {
+                JsonArray array = JsonParser.parseString(literal.substring(separator + 2)).getAsJsonArray();
+                Object[] elements = new Object[array.size()];
+                for (int i = 0; i < elements.length; i++) {
+                    JsonElement element = array.get(i);
+                    elements[i] = element.isJsonNull() ? null : convertElement(type, element);
                 }
-            } else {
-                // convertDates is false - no conversion
-                input = input.replace(
-                        STRING_MARKER + extractedStrings.get(i) + STRING_MARKER,
-                        PARAM_MARKER + i + PARAM_MARKER
-                );
+                return new ListParameter(type, elements);
+            } catch (RuntimeException e) {
+                throw new SQLException("Invalid " + type + " list parameter", e);
             }
         }
-        return input;
-    }
 
-    /**
-     * Helper method to create appropriate DateTime object
-     * If the original string contains time components (T and time), always create Timestamp
-     * Only create Date for date-only strings (YYYY-MM-DD)
-     */
-    private static Object createDateTimeObject(ZonedDateTime zonedDateTime, String originalString) {
-        // If the original string contains 'T' (time separator), it's a timestamp regardless of the time values
-        if (originalString.contains("T")) {
-            return Timestamp.from(zonedDateTime.toInstant());
-        } else {
-            // Only for pure date strings like "2025-07-10" should we return Date
-            return Date.valueOf(zonedDateTime.toLocalDate());
+        private static Object convertElement(String type, JsonElement element) {
+            switch (type) {
+                case "INTEGER":
+                    return element.getAsInt();
+                case "BIGINT":
+                    return element.getAsLong();
+                case "DECIMAL":
+                    return element.getAsBigDecimal();
+                case "DOUBLE":
+                    return element.getAsDouble();
+                case "BOOLEAN":
+                    return element.getAsBoolean();
+                case "DATE":
+                    return Date.valueOf(element.getAsString());
+                case "TIMESTAMP":
+                    Object timestamp = TemporalLiterals.convert(element.getAsString());
+                    if (!(timestamp instanceof Timestamp)) {
+                        throw new IllegalArgumentException("Not a timestamp: " + element);
+                    }
+                    return timestamp;
+                default:
+                    return element.getAsString();
+            }
         }
     }
 }
@@ -0,0 +1,125 @@
+package com.hasura;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the schemas and tables to introspect.
+ * <p>
+ * Each pattern is either {@code schema}, selecting every table of the schemas it
+ * matches, or {@code schema.table}. Both parts are globs, in which {@code *} matches
+ * any run of characters and {@code ?} any single character; everything else matches
+ * itself, case sensitively. A table is selected when any pattern matches it.
+ */
+final class TableFilter {
+
+    /** Selects every table. */
+    static final TableFilter ALL = new TableFilter(null);
+
+    private static final class Entry {
+        final Pattern schema;
+        final Pattern table;
+
+        Entry(Pattern schema, Pattern table) {
+            this.schema = schema;
+            this.table = table;
+        }
+    }
+
+    // null selects everything
+    private final List<Entry> entries;
+
+    private TableFilter(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @param patterns The schema or table patterns; {@code null} or none selects every table.
+     * @return The filter.
+     */
+    static TableFilter of(String[] patterns) {
+        if (patterns == null || patterns.length == 0) {
+            return ALL;
+        }
+        List<Entry> entries = new ArrayList<>(patterns.length);
+        for (String pattern : patterns) {
+            int dot = pattern.indexOf('.');
+            entries.add(dot < 0
+                    ? new Entry(glob(pattern), null)
+                    : new Entry(glob(pattern.substring(0, dot)), glob(pattern.substring(dot + 1))));
+        }
+        return new TableFilter(entries);
+    }
+
+    /**
+     * @return Whether any table of the schema can be selected.
+     */
+    boolean matchesSchema(String schema) {
+        if (entries == null) {
+            return true;
+        }
+        for (Entry entry : entries) {
+            if (entry.schema.matcher(nullToEmpty(schema)).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether every table of the schema is selected.
+     */
+    boolean matchesAllTables(String schema) {
+        if (entries == null) {
+            return true;
+        }
+        for (Entry entry : entries) {
+            if (entry.table == null && entry.schema.matcher(nullToEmpty(schema)).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the table is selected.
+     */
+    boolean matches(String schema, String table) {
+        if (entries == null) {
+            return true;
+        }
+        for (Entry entry : entries) {
+            if (entry.schema.matcher(nullToEmpty(schema)).matches()
+                    && (entry.table == null || entry.table.matcher(nullToEmpty(table)).matches())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern glob(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
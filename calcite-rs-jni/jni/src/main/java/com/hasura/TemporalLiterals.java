@@ -0,0 +1,247 @@
+package com.hasura;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Converts marked up date and timestamp literals to the {@link Date} or {@link Timestamp}
+ * to bind for them, caching the result per literal.
+ * <p>
+ * The shape of a literal is classified with a character scan instead of regular
+ * expressions, and a literal is only handed to a {@link DateTimeFormatter} when its
+ * shape is one the formatter accepts, so ordinary values never throw. Only literals
+ * of a parseable shape, and {@code DATE::} or {@code TIMESTAMP::} prefixed ones, are
+ * converted and kept in a bounded cache shared across requests, so the time-window
+ * literals a dashboard repeats cost one lookup, and other values such as phone numbers
+ * or IDs never displace them. The cache size is read from the
+ * {@code ndc.calcite.temporalLiteralCacheSize} system property (default {@value #DEFAULT_CACHE_SIZE}).
+ */
+final class TemporalLiterals {
+
+    static final int DEFAULT_CACHE_SIZE = 10000;
+
+    private static final String DATE_PREFIX = "DATE::";
+    private static final String TIMESTAMP_PREFIX = "TIMESTAMP::";
+
+    // Cached for literals of a temporal shape that do not convert, such as a thirteenth month
+    private static final Object NOT_TEMPORAL = new Object();
+
+    private static final Cache<String, Object> cache = CacheBuilder.newBuilder()
+            .maximumSize(Math.max(0, Integer.getInteger("ndc.calcite.temporalLiteralCacheSize", DEFAULT_CACHE_SIZE)))
+            .build();
+
+    private static final DateTimeFormatter FLEXIBLE_FORMATTER = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("yyyy-MM-dd")
+            .appendLiteral('T')
+            .appendPattern("HH:mm")
+            .optionalStart()
+            .appendLiteral(':')
+            .appendPattern("ss")
+            .optionalEnd()
+            .optionalStart()
+            .appendFraction(ChronoField.NANO_OF_SECOND, 1, 9, true)
+            .optionalEnd()
+            .optionalStart()
+            .appendPattern("XXX")  // Handles +05:00, Z
+            .optionalEnd()
+            .optionalStart()
+            .appendPattern("XX")   // Handles +0500
+            .optionalEnd()
+            .toFormatter();
+    private static final DateTimeFormatter RFC_3339_DATE_TIME = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("yyyy-MM-dd'T'HH:mm:ss")
+            .optionalStart()
+            .appendPattern(".SSS")
+            .optionalEnd()
+            .appendPattern("XXX")
+            .toFormatter();
+
+    private TemporalLiterals() {
+    }
+
+    /**
+     * Converts a marked up string to the value to bind for it. UTC formatted dates and
+     * timestamps become ANSI SQL dates and timestamps, as do {@code DATE::} and
+     * {@code TIMESTAMP::} prefixed values. Anything else, including values that fail to
+     * parse, is bound as the original string.
+     *
+     * @param literal The text between the markers.
+     * @return A new {@link Date} or {@link Timestamp}, or the literal itself.
+     */
+    static Object convert(String literal) {
+        Shape shape = literal.startsWith(DATE_PREFIX) || literal.startsWith(TIMESTAMP_PREFIX)
+                ? Shape.PREFIXED
+                : classify(literal);
+        if (shape == Shape.OTHER) {
+            return literal;
+        }
+        Object value;
+        try {
+            value = cache.get(literal, () -> parse(literal, shape));
+        } catch (ExecutionException e) {
+            return literal;
+        }
+        if (value == NOT_TEMPORAL) {
+            return literal;
+        }
+        // Bound values are handed to drivers, so each use gets its own copy.
+        return value instanceof Timestamp ? ((Timestamp) value).clone() : ((Date) value).clone();
+    }
+
+    /**
+     * @return The number of literals whose conversion is cached.
+     */
+    static long cachedLiterals() {
+        return cache.size();
+    }
+
+    private static Object parse(String literal, Shape shape) {
+        try {
+            switch (shape) {
+                case PREFIXED:
+                    if (literal.startsWith(DATE_PREFIX)) {
+                        return Date.valueOf(literal.replace(DATE_PREFIX, ""));
+                    }
+                    String rfcDateString = literal.replace(TIMESTAMP_PREFIX, "");
+                    // RFC 3339 starts with a four digit year, RFC 1123 never has a dash at that position.
+                    DateTimeFormatter formatter = rfcDateString.length() > 4 && rfcDateString.charAt(4) == '-'
+                            ? RFC_3339_DATE_TIME
+                            : DateTimeFormatter.RFC_1123_DATE_TIME;
+                    return Timestamp.from(ZonedDateTime.parse(rfcDateString, formatter).toInstant());
+                case ZONED_PARSEABLE:
+                    // Handle any timestamp with timezone information
+                    return Timestamp.from(ZonedDateTime.parse(literal, FLEXIBLE_FORMATTER).toInstant());
+                case LOCAL_PARSEABLE:
+                    // Handle local datetime (no timezone) - assume UTC
+                    return Timestamp.from(LocalDateTime.parse(literal, FLEXIBLE_FORMATTER).toInstant(ZoneOffset.UTC));
+                case DATE:
+                    // Handle date-only format: YYYY-MM-DD
+                    return Date.valueOf(literal);
+                default:
+                    return NOT_TEMPORAL;
+            }
+        } catch (RuntimeException e) {
+            // Well-formed but out of range, such as a thirteenth month
+            return NOT_TEMPORAL;
+        }
+    }
+
+    enum Shape {
+        /** A {@code DATE::} or {@code TIMESTAMP::} prefixed value. */
+        PREFIXED,
+        /** A timestamp with a zone that {@link #FLEXIBLE_FORMATTER} can parse. */
+        ZONED_PARSEABLE,
+        /** A timestamp without a zone that {@link #FLEXIBLE_FORMATTER} can parse. */
+        LOCAL_PARSEABLE,
+        /** A date in the form {@code YYYY-MM-DD}. */
+        DATE,
+        /** Anything else, including timestamps with one digit fields or a space separator. */
+        OTHER
+    }
+
+    /**
+     * Classifies the RFC 3339 / ISO 8601 shapes accepted for dates and timestamps:
+     * {@code YYYY-M-D[T ]H:MM[:SS][.F]} followed by nothing, {@code Z}, or (with a
+     * {@code T} separator) an offset of the form {@code +HH:MM} or {@code +HHMM}.
+     */
+    static Shape classify(String s) {
+        int n = s.length();
+        if (!isDigits(s, 0, 4) || !isChar(s, 4, '-')) {
+            return Shape.OTHER;
+        }
+        int monthEnd = digitRunEnd(s, 5, 2);
+        if (monthEnd == 5 || !isChar(s, monthEnd, '-')) {
+            return Shape.OTHER;
+        }
+        int dayEnd = digitRunEnd(s, monthEnd + 1, 2);
+        if (dayEnd == monthEnd + 1) {
+            return Shape.OTHER;
+        }
+        boolean twoDigitDate = monthEnd == 7 && dayEnd == 10;
+        if (dayEnd == n) {
+            return twoDigitDate ? Shape.DATE : Shape.OTHER;
+        }
+        char separator = s.charAt(dayEnd);
+        if (separator != 'T' && !isRegexWhitespace(separator)) {
+            return Shape.OTHER;
+        }
+        int hourEnd = digitRunEnd(s, dayEnd + 1, 2);
+        if (hourEnd == dayEnd + 1 || !isChar(s, hourEnd, ':') || !isDigits(s, hourEnd + 1, 2)) {
+            return Shape.OTHER;
+        }
+        // Only the formatter's own layout parses: a T separator and two digit fields.
+        boolean parseable = twoDigitDate && separator == 'T' && hourEnd == dayEnd + 3;
+        int i = hourEnd + 3;
+        if (isChar(s, i, ':')) {
+            if (!isDigits(s, i + 1, 2)) {
+                return Shape.OTHER;
+            }
+            i += 3;
+        }
+        if (isChar(s, i, '.')) {
+            int fractionEnd = digitRunEnd(s, i + 1, 9);
+            if (fractionEnd == i + 1) {
+                return Shape.OTHER;
+            }
+            i = fractionEnd;
+        }
+        if (i == n) {
+            return parseable ? Shape.LOCAL_PARSEABLE : Shape.OTHER;
+        }
+        boolean zoned;
+        if (s.charAt(i) == 'Z') {
+            zoned = i + 1 == n;
+        } else if (s.charAt(i) == '+' || s.charAt(i) == '-') {
+            zoned = separator == 'T'
+                    && (i + 6 == n && isDigits(s, i + 1, 2) && isChar(s, i + 3, ':') && isDigits(s, i + 4, 2)
+                    || i + 5 == n && isDigits(s, i + 1, 4));
+        } else {
+            zoned = false;
+        }
+        return zoned && parseable ? Shape.ZONED_PARSEABLE : Shape.OTHER;
+    }
+
+    private static boolean isDigit(String s, int i) {
+        return i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9';
+    }
+
+    private static boolean isDigits(String s, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            if (!isDigit(s, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The index after a run of at most {@code max} digits starting at {@code from}.
+     */
+    private static int digitRunEnd(String s, int from, int max) {
+        int i = from;
+        while (i < from + max && isDigit(s, i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isChar(String s, int i, char c) {
+        return i < s.length() && s.charAt(i) == c;
+    }
+
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
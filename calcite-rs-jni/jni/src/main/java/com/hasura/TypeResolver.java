@@ -0,0 +1,174 @@
+package com.hasura;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.calcite.sql.SqlDialect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Maps the {@code TYPE_NAME} of a column, as reported by JDBC metadata, to the
+ * simplified scalar type exposed by the connector.
+ * <p>
+ * A type name is first looked up in a table of known names, then matched against an
+ * ordered list of fallback rules. Unknown types resolve to {@code null}. The rule
+ * tables are immutable and shared, and a resolver is built once per dialect and set
+ * of overrides, remembering the resolution of every type name it has seen, so that
+ * introspecting a wide schema does one map lookup per column.
+ * <p>
+ * A schema in the model can add or replace exact mappings with a {@code typeMappings}
+ * object of type names to scalar types.
+ */
+final class TypeResolver {
+
+    private static final Map<String, String> KNOWN_TYPES = ImmutableMap.<String, String>builder()
+            .put("CHAR", "CHAR")
+            .put("CHAR(1)", "VARCHAR")
+            .put("VARCHAR", "VARCHAR")
+            .put("VARCHAR(65536)", "VARCHAR")
+            .put("VARCHAR(65536) NOT NULL", "VARCHAR")
+            .put("VARCHAR NOT NULL", "VARCHAR")
+            .put("JavaType(class java.util.ArrayList)", "LIST")
+            .put("JavaType(class org.apache.calcite.adapter.file.ComparableArrayList)", "LIST")
+            .put("ANY ARRAY", "LIST")
+            .put("VARCHAR NOT NULL ARRAY", "LIST")
+            .put("JavaType(class java.util.LinkedHashMap)", "MAP")
+            .put("JavaType(class org.apache.calcite.adapter.file.ComparableLinkedHashMap)", "MAP")
+            .put("JavaType(class java.lang.String)", "VARCHAR")
+            .put("JavaType(class java.lang.Integer)", "INTEGER")
+            .put("INTEGER NOT NULL", "INTEGER")
+            .put("INTEGER", "INTEGER")
+            .put("MAP NOT NULL", "MAP")
+            .put("ARRAY NOT NULL", "ARRAY")
+            .put("JSON", "JSON")
+            .put("JSONB", "JSON")
+            .put("SMALLINT NOT NULL", "INTEGER")
+            .put("SMALLINT", "INTEGER")
+            .put("TINYINT NOT NULL", "INTEGER")
+            .put("TINYINT", "INTEGER")
+            .put("BIGINT NOT NULL", "INTEGER")
+            .put("BIGINT", "INTEGER")
+            .put("FLOAT NOT NULL", "FLOAT")
+            .put("FLOAT", "FLOAT")
+            .put("DOUBLE NOT NULL", "DOUBLE")
+            .put("DOUBLE", "DOUBLE")
+            .put("BOOLEAN NOT NULL", "BOOLEAN")
+            .put("BOOLEAN", "BOOLEAN")
+            .put("VARBINARY NOT NULL", "VARBINARY")
+            .put("VARBINARY", "VARBINARY")
+            .put("BINARY NOT NULL", "BINARY")
+            .put("BINARY", "BINARY")
+            .put("DATE NOT NULL", "DATE")
+            .put("DATE", "DATE")
+            .put("TIME(0) NOT NULL", "TIME")
+            .put("TIME(0)", "TIME")
+            .put("TIMESTAMP(0) NOT NULL", "TIMESTAMP")
+            .put("TIMESTAMP(0)", "TIMESTAMP")
+            .put("TIMESTAMP(3) NOT NULL", "TIMESTAMP")
+            .put("TIMESTAMP(3)", "TIMESTAMP")
+            .put("TIMESTAMP NOT NULL", "TIMESTAMPTZ")
+            .put("TIMESTAMP", "TIMESTAMPTZ")
+            .put("DECIMAL(10,2)", "FLOAT")
+            .put("DECIMAL(12,2)", "FLOAT")
+            .build();
+
+    /**
+     * A fallback for type names that are not known exactly, matched against the lower
+     * case type name.
+     */
+    private static final class Rule {
+        final Predicate<String> matches;
+        final String type;
+
+        Rule(Predicate<String> matches, String type) {
+            this.matches = matches;
+            this.type = type;
+        }
+    }
+
+    // Applied in order, the first match wins.
+    private static final List<Rule> FALLBACK_RULES = ImmutableList.of(
+            new Rule(name -> name.contains("varchar") && !name.endsWith("map"), "VARCHAR"),
+            new Rule(name -> name.contains("timestamp"), "TIMESTAMP"),
+            new Rule(name -> name.contains("decimal"), "FLOAT"),
+            new Rule(name -> name.startsWith("any"), "VARBINARY"),
+            new Rule(name -> name.endsWith("map"), "MAP"),
+            new Rule(name -> name.endsWith("array"), "LIST"),
+            new Rule(name -> name.contains("for json"), "JSON"));
+
+    // Remembered for type names that no rule matches
+    private static final String UNKNOWN = "";
+
+    private static final Map<List<Object>, TypeResolver> resolvers = new ConcurrentHashMap<>();
+
+    private final Map<String, String> knownTypes;
+    private final boolean sqliteDateColumns;
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();
+
+    private TypeResolver(Map<String, String> knownTypes, boolean sqliteDateColumns) {
+        this.knownTypes = knownTypes;
+        this.sqliteDateColumns = sqliteDateColumns;
+    }
+
+    /**
+     * Returns the shared resolver for a dialect and set of overrides.
+     *
+     * @param dialect   The dialect of the schema's JDBC source, or {@code null} for other schemas.
+     * @param overrides Type names mapped to scalar types, taking precedence over the known types.
+     * @return The resolver.
+     */
+    static TypeResolver of(SqlDialect dialect, Map<String, String> overrides) {
+        Map<String, String> mappings = overrides == null ? Collections.emptyMap() : overrides;
+        List<Object> key = Arrays.asList(dialect == null ? null : dialect.getClass(), mappings);
+        return resolvers.computeIfAbsent(key, k -> {
+            Map<String, String> knownTypes = KNOWN_TYPES;
+            if (!mappings.isEmpty()) {
+                Map<String, String> merged = new HashMap<>(KNOWN_TYPES);
+                merged.putAll(mappings);
+                knownTypes = ImmutableMap.copyOf(merged);
+            }
+            return new TypeResolver(knownTypes, dialect instanceof SQLiteSqlDialect);
+        });
+    }
+
+    /**
+     * Resolves the scalar type of a column.
+     *
+     * @param typeName   The column's {@code TYPE_NAME}.
+     * @param columnName The column's name.
+     * @return The scalar type, or {@code null} if the type is unknown.
+     */
+    String resolve(String typeName, String columnName) {
+        if (typeName == null) {
+            return null;
+        }
+        String type = resolved.computeIfAbsent(typeName, this::lookup);
+        // SQLite declares dates as text; fall back on the column name.
+        if (sqliteDateColumns && typeName.startsWith("VARCHAR(65536)")
+                && columnName != null && columnName.toLowerCase(Locale.ROOT).contains("date")) {
+            return "TIMESTAMP";
+        }
+        return type.isEmpty() ? null : type;
+    }
+
+    private String lookup(String typeName) {
+        String type = knownTypes.get(typeName);
+        if (type != null) {
+            return type;
+        }
+        String name = typeName.toLowerCase(Locale.ROOT);
+        for (Rule rule : FALLBACK_RULES) {
+            if (rule.matches.test(name)) {
+                return rule.type;
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,153 @@
+package com.hasura;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConfigPreprocessorTest {
+
+    private static final Map<String, String> ENV = new HashMap<>();
+
+    static {
+        ENV.put("HOST", "db.example.com");
+        ENV.put("PORT", "5432");
+        ENV.put("NESTED", "${HOST}");
+    }
+
+    @Test
+    public void substitutesSetVariables() {
+        assertEquals("jdbc:postgresql://db.example.com:5432/app",
+                ConfigPreprocessor.substituteEnvironment("jdbc:postgresql://${HOST}:${PORT}/app", ENV));
+    }
+
+    @Test
+    public void leavesUnsetVariablesAndPlainTextAsTheyAre() {
+        assertEquals("user=${USER}", ConfigPreprocessor.substituteEnvironment("user=${USER}", ENV));
+        assertEquals("no placeholders", ConfigPreprocessor.substituteEnvironment("no placeholders", ENV));
+        assertEquals("open ${HOST", ConfigPreprocessor.substituteEnvironment("open ${HOST", ENV));
+    }
+
+    @Test
+    public void doesNotSubstituteSubstitutedValuesAgain() {
+        assertEquals("${HOST}", ConfigPreprocessor.substituteEnvironment("${NESTED}", ENV));
+    }
+
+    @Test
+    public void substitutesAfterAnUnsetVariable() {
+        assertEquals("${USER}@db.example.com", ConfigPreprocessor.substituteEnvironment("${USER}@${HOST}", ENV));
+    }
+
+    @Test
+    public void removesConnectorKeys() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", "files");
+        schema.put("type", "custom");
+        schema.put("factory", "org.example.FileSchemaFactory");
+        schema.put("typeMappings", Collections.singletonMap("NUMBER", "BIGINT"));
+        Map<String, Object> model = new LinkedHashMap<>();
+        model.put("version", "1.0");
+        model.put("warmup", Collections.singletonList("SELECT 1"));
+        model.put("schemas", Collections.singletonList(schema));
+
+        Map<String, Object> converted = asMap(ConfigPreprocessor.toCalciteModel(model));
+
+        assertFalse(converted.containsKey("warmup"));
+        Map<String, Object> convertedSchema = asMap(((List<?>) converted.get("schemas")).get(0));
+        assertFalse(convertedSchema.containsKey("typeMappings"));
+        assertEquals("org.example.FileSchemaFactory", convertedSchema.get("factory"));
+        // The given model is left as it is.
+        assertTrue(model.containsKey("warmup"));
+        assertTrue(schema.containsKey("typeMappings"));
+    }
+
+    @Test
+    public void buildsJdbcSchemasWithThePooledFactory() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", "sales");
+        schema.put("type", "jdbc");
+        schema.put("jdbcUrl", "jdbc:h2:mem:sales");
+        schema.put("jdbcUser", "sa");
+        schema.put("cache", false);
+
+        Map<String, Object> converted = asMap(((List<?>) asMap(ConfigPreprocessor.toCalciteModel(model(schema))).get("schemas")).get(0));
+
+        assertEquals("custom", converted.get("type"));
+        assertEquals(PooledJdbcSchemaFactory.class.getName(), converted.get("factory"));
+        assertEquals("sales", converted.get("name"));
+        assertEquals(false, converted.get("cache"));
+        Map<String, Object> operand = asMap(converted.get("operand"));
+        assertEquals("jdbc:h2:mem:sales", operand.get("jdbcUrl"));
+        assertEquals("sa", operand.get("jdbcUser"));
+        assertFalse(operand.containsKey("name"));
+    }
+
+    @Test
+    public void wrapsLazyCustomSchemas() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", "files");
+        schema.put("type", "custom");
+        schema.put("factory", "org.example.FileSchemaFactory");
+        schema.put("operand", Collections.singletonMap("directory", "/data"));
+        schema.put("lazy", true);
+
+        Map<String, Object> converted = asMap(((List<?>) asMap(ConfigPreprocessor.toCalciteModel(model(schema))).get("schemas")).get(0));
+
+        assertFalse(converted.containsKey("lazy"));
+        assertEquals(LazySchemaFactory.class.getName(), converted.get("factory"));
+        Map<String, Object> operand = asMap(converted.get("operand"));
+        assertEquals("org.example.FileSchemaFactory", operand.get("factory"));
+        assertEquals(Collections.singletonMap("directory", "/data"), operand.get("operand"));
+    }
+
+    @Test
+    public void leavesLazyJdbcSchemasEager() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", "sales");
+        schema.put("type", "jdbc");
+        schema.put("jdbcUrl", "jdbc:h2:mem:sales");
+        schema.put("lazy", "true");
+
+        Map<String, Object> converted = asMap(((List<?>) asMap(ConfigPreprocessor.toCalciteModel(model(schema))).get("schemas")).get(0));
+
+        assertFalse(converted.containsKey("lazy"));
+        assertEquals(PooledJdbcSchemaFactory.class.getName(), converted.get("factory"));
+    }
+
+    @Test
+    public void passesOtherDataThrough() {
+        assertEquals("text", ConfigPreprocessor.toCalciteModel("text"));
+        Map<String, Object> model = new LinkedHashMap<>();
+        model.put("version", "1.0");
+        assertEquals(model, ConfigPreprocessor.toCalciteModel(model));
+    }
+
+    @Test
+    public void inlinesTheConvertedModel() throws Exception {
+        Map<String, Object> model = new LinkedHashMap<>();
+        model.put("version", "1.0");
+        model.put("defaultSchema", "files");
+        model.put("warmup", Arrays.asList("SELECT 1"));
+
+        assertEquals("inline:{\"version\":\"1.0\",\"defaultSchema\":\"files\"}", ConfigPreprocessor.inlineModel(model));
+    }
+
+    private static Map<String, Object> model(Map<String, Object> schema) {
+        Map<String, Object> model = new LinkedHashMap<>();
+        model.put("version", "1.0");
+        model.put("schemas", Collections.singletonList(schema));
+        return model;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        assertInstanceOf(Map.class, value);
+        return (Map<String, Object>) value;
+    }
+}
@@ -0,0 +1,66 @@
+package com.hasura;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectBufferPoolTest {
+
+    @Test
+    public void leasedSliceHoldsExactlyThePayload() {
+        DirectBufferPool pool = new DirectBufferPool();
+        DirectBufferOutputStream out = new DirectBufferOutputStream(pool);
+        byte[] payload = "[{\"id\":1}]".getBytes(StandardCharsets.UTF_8);
+        out.write(payload, 0, payload.length);
+
+        ByteBuffer slice = out.toByteBuffer();
+
+        assertTrue(slice.isDirect());
+        assertEquals(payload.length, slice.capacity());
+        byte[] read = new byte[slice.remaining()];
+        slice.get(read);
+        assertEquals("[{\"id\":1}]", new String(read, StandardCharsets.UTF_8));
+        assertEquals(DirectBufferPool.MIN_CAPACITY, pool.leasedBytes());
+    }
+
+    @Test
+    public void releaseReturnsTheBackingBufferToThePool() {
+        DirectBufferPool pool = new DirectBufferPool();
+        ByteBuffer buffer = pool.acquire(16);
+        buffer.put(new byte[]{1, 2, 3});
+        ByteBuffer slice = pool.lease(buffer, 3);
+
+        pool.release(slice);
+
+        assertEquals(0, pool.leasedBytes());
+        assertSame(buffer, pool.acquire(16));
+    }
+
+    @Test
+    public void releasingAnUnknownBufferIsIgnored() {
+        DirectBufferPool pool = new DirectBufferPool();
+        ByteBuffer buffer = pool.acquire(16);
+        pool.lease(buffer, 0);
+
+        pool.release(ByteBuffer.allocateDirect(8));
+
+        assertEquals(DirectBufferPool.MIN_CAPACITY, pool.leasedBytes());
+    }
+
+    @Test
+    public void outputStreamGrowsPastTheInitialCapacity() {
+        DirectBufferPool pool = new DirectBufferPool();
+        DirectBufferOutputStream out = new DirectBufferOutputStream(pool);
+        byte[] chunk = new byte[DirectBufferPool.MIN_CAPACITY];
+        out.write(chunk, 0, chunk.length);
+        out.write('x');
+
+        ByteBuffer slice = out.toByteBuffer();
+
+        assertEquals(DirectBufferPool.MIN_CAPACITY + 1, slice.capacity());
+        assertEquals('x', slice.get(DirectBufferPool.MIN_CAPACITY));
+    }
+}
@@ -0,0 +1,119 @@
+package com.hasura;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.jdbc.Driver;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Schema;
+import org.apache.calcite.schema.SchemaFactory;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.schema.impl.LongSchemaVersion;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazySchemaFactoryTest {
+
+    @BeforeEach
+    public void resetCreated() {
+        NumbersSchemaFactory.created.set(0);
+    }
+
+    @Test
+    public void queriesThroughALazySchema() throws Exception {
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT \"n\" FROM \"numbers\".\"numbers\" WHERE \"n\" > 1 ORDER BY \"n\"")) {
+            List<Integer> values = new ArrayList<>();
+            while (rows.next()) {
+                values.add(rows.getInt(1));
+            }
+            assertEquals(Arrays.asList(2, 3), values);
+            assertEquals(1, NumbersSchemaFactory.created.get());
+        }
+    }
+
+    @Test
+    public void doesNotCreateTheSchemaForARootSnapshot() throws Exception {
+        try (Connection connection = connect()) {
+            CalciteSchema rootSchema = connection.unwrap(CalciteConnection.class).getRootSchema().unwrap(CalciteSchema.class);
+            CalciteSchema snapshot = rootSchema.createSnapshot(new LongSchemaVersion(System.nanoTime()));
+            assertNotNull(snapshot.getSubSchema("numbers", true));
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT 1")) {
+                assertTrue(rows.next());
+            }
+            assertEquals(0, NumbersSchemaFactory.created.get());
+        }
+    }
+
+    private static Connection connect() throws Exception {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", "numbers");
+        schema.put("type", "custom");
+        schema.put("factory", NumbersSchemaFactory.class.getName());
+        schema.put("operand", Collections.emptyMap());
+        schema.put("lazy", true);
+        Map<String, Object> model = new LinkedHashMap<>();
+        model.put("version", "1.0");
+        model.put("schemas", Collections.singletonList(schema));
+        Properties info = new Properties();
+        info.setProperty("model", ConfigPreprocessor.inlineModel(model));
+        return new Driver().connect("jdbc:calcite:", info);
+    }
+
+    /**
+     * Builds a schema with one table of the numbers 1 to 3, counting how often it is called.
+     */
+    public static class NumbersSchemaFactory implements SchemaFactory {
+        static final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public Schema create(SchemaPlus parentSchema, String name, Map<String, Object> operand) {
+            created.incrementAndGet();
+            return new NumbersSchema();
+        }
+    }
+
+    // Generated code refers to the schema and table classes, so they are public.
+    public static class NumbersSchema extends AbstractSchema {
+        @Override
+        protected Map<String, Table> getTableMap() {
+            return Collections.singletonMap("numbers", new NumbersTable());
+        }
+    }
+
+    public static class NumbersTable extends AbstractTable implements ScannableTable {
+        @Override
+        public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+            return typeFactory.builder().add("n", SqlTypeName.INTEGER).build();
+        }
+
+        @Override
+        public Enumerable<Object[]> scan(DataContext root) {
+            return Linq4j.asEnumerable(new Object[][]{{1}, {2}, {3}});
+        }
+    }
+}
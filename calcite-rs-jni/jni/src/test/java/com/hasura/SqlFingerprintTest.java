@@ -0,0 +1,68 @@
+package com.hasura;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlFingerprintTest {
+
+    @Test
+    public void collapsesAndTrimsWhitespace() {
+        assertEquals("SELECT \"a\" FROM \"t\" WHERE \"b\" = ?",
+                SqlFingerprint.canonicalize("  SELECT \"a\"\n\tFROM   \"t\"\r\n WHERE \"b\" = ?  "));
+    }
+
+    @Test
+    public void keepsWhitespaceInsideQuotes() {
+        assertEquals("SELECT 'a  b', \"x\n y\" FROM `t  u`",
+                SqlFingerprint.canonicalize("SELECT  'a  b',  \"x\n y\"  FROM  `t  u`"));
+    }
+
+    @Test
+    public void keepsDoubledQuotesInsideLiterals() {
+        assertEquals("SELECT 'it''s  here' FROM t",
+                SqlFingerprint.canonicalize("SELECT   'it''s  here'   FROM t"));
+    }
+
+    @Test
+    public void lineCommentKeepsItsLineBreak() {
+        String canonical = SqlFingerprint.canonicalize("SELECT a -- the key\n  FROM t\n  WHERE b = ?");
+        assertEquals("SELECT a -- the key\nFROM t WHERE b = ?", canonical);
+    }
+
+    @Test
+    public void lineCommentAtTheEndIsKept() {
+        assertEquals("SELECT a FROM t -- done", SqlFingerprint.canonicalize("SELECT a  FROM t -- done"));
+    }
+
+    @Test
+    public void quotesInsideCommentsDoNotOpenLiterals() {
+        assertEquals("SELECT a -- it's\nFROM t WHERE b = 'x  y'",
+                SqlFingerprint.canonicalize("SELECT a -- it's\n FROM  t WHERE b = 'x  y'"));
+        assertEquals("SELECT /* it's */ a FROM t",
+                SqlFingerprint.canonicalize("SELECT  /* it's */  a  FROM t"));
+    }
+
+    @Test
+    public void blockCommentsAndHintsAreKeptVerbatim() {
+        assertEquals("SELECT /*+ index(t  i) */ a FROM t",
+                SqlFingerprint.canonicalize("SELECT\n/*+ index(t  i) */\na FROM t"));
+    }
+
+    @Test
+    public void unbalancedInputIsReturnedUnchanged() {
+        String unterminatedQuote = "SELECT  'abc FROM t";
+        assertSame(unterminatedQuote, SqlFingerprint.canonicalize(unterminatedQuote));
+        String unterminatedComment = "SELECT  a /* FROM t";
+        assertSame(unterminatedComment, SqlFingerprint.canonicalize(unterminatedComment));
+    }
+
+    @Test
+    public void queriesOfTheSameShapeShareAFingerprint() {
+        SqlFingerprint a = SqlFingerprint.of("SELECT a\nFROM t WHERE b = ?");
+        SqlFingerprint b = SqlFingerprint.of("SELECT   a FROM t\n\nWHERE b = ?");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, SqlFingerprint.of("SELECT a FROM t WHERE c = ?"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.hasura;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementPreparerTest {
+
+    @Test
+    public void sqlWithoutMarkersIsUnchanged() throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT 1";
+        assertSame(sql, StatementPreparer.parameterize(sql, true, params));
+        assertTrue(params.isEmpty());
+    }
+
+    @Test
+    public void markedUpStringsBecomePlaceholders() throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = StatementPreparer.parameterize(
+                "SELECT * FROM t WHERE a = __UTF8__x__UTF8__ AND b = __UTF8__y z__UTF8__", true, params);
+        assertEquals("SELECT * FROM t WHERE a = ? AND b = ?", sql);
+        assertEquals(List.of("x", "y z"), params);
+    }
+
+    @Test
+    public void unterminatedMarkerIsLeftInTheSql() throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = StatementPreparer.parameterize("SELECT __UTF8__a__UTF8__, __UTF8__b", true, params);
+        assertEquals("SELECT ?, __UTF8__b", sql);
+        assertEquals(List.of("a"), params);
+    }
+
+    @Test
+    public void typedPrefixesInStringsStayStrings() throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StatementPreparer.parameterize(
+                "SELECT * FROM t WHERE a = __UTF8__INTEGER::5__UTF8__ AND b = __UTF8__BOOLEAN::true__UTF8__"
+                        + " AND c IN (__UTF8__LIST::INTEGER::[1]__UTF8__)", true, params);
+        assertEquals(List.of("INTEGER::5", "BOOLEAN::true", "LIST::INTEGER::[1]"), params);
+    }
+
+    @Test
+    public void typedMarkersBindNativeValues() throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = StatementPreparer.parameterize(
+                "SELECT * FROM t WHERE a = __TYPED__INTEGER::5__TYPED__ AND b = __TYPED__BIGINT::9000000000__TYPED__"
+                        + " AND c = __TYPED__DECIMAL::1.50__TYPED__ AND d = __TYPED__DOUBLE::2.5__TYPED__"
+                        + " AND e = __TYPED__BOOLEAN::TRUE__TYPED__", false, params);
+        assertEquals("SELECT * FROM t WHERE a = ? AND b = ? AND c = ? AND d = ? AND e = ?", sql);
+        assertEquals(List.of(5, 9000000000L, new BigDecimal("1.50"), 2.5, true), params);
+    }
+
+    @Test
+    public void malformedTypedValuesAreRejected() {
+        assertThrows(SQLException.class, () -> StatementPreparer.convertTypedLiteral("INTEGER::five"));
+        assertThrows(SQLException.class, () -> StatementPreparer.convertTypedLiteral("BOOLEAN::yes"));
+        assertThrows(SQLException.class, () -> StatementPreparer.convertTypedLiteral("FLOAT::1.0"));
+        assertThrows(SQLException.class, () -> StatementPreparer.convertTypedLiteral(""));
+    }
+
+    @Test
+    public void markersInsideAValueOfTheOtherKindArePartOfIt() throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = StatementPreparer.parameterize(
+                "SELECT __UTF8__a __TYPED__INTEGER::1__TYPED__ b__UTF8__, __TYPED__INTEGER::2__TYPED__", true, params);
+        assertEquals("SELECT ?, ?", sql);
+        assertEquals(List.of("a __TYPED__INTEGER::1__TYPED__ b", 2), params);
+    }
+
+    @Test
+    public void datesAreConvertedOnlyWhenRequested() throws SQLException {
+        List<Object> converted = new ArrayList<>();
+        StatementPreparer.parameterize("SELECT __UTF8__2024-01-31__UTF8__", true, converted);
+        assertEquals(Date.valueOf("2024-01-31"), converted.get(0));
+
+        List<Object> raw = new ArrayList<>();
+        StatementPreparer.parameterize("SELECT __UTF8__2024-01-31T10:15:30Z__UTF8__", false, raw);
+        assertEquals("2024-01-31T10:15:30Z", raw.get(0));
+
+        List<Object> timestamps = new ArrayList<>();
+        StatementPreparer.parameterize("SELECT __UTF8__2024-01-31T10:15:30Z__UTF8__", true, timestamps);
+        assertInstanceOf(Timestamp.class, timestamps.get(0));
+    }
+
+    @Test
+    public void shortListsExpandToABucketOfPlaceholders() throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = StatementPreparer.parameterize(
+                "SELECT * FROM t WHERE x IN (__TYPED__LIST::INTEGER::[1,2,3]__TYPED__)", true, params);
+        assertEquals("SELECT * FROM t WHERE x IN (?, ?, ?, ?)", sql);
+        assertEquals(List.of(1, 2, 3, 3), params);
+    }
+
+    @Test
+    public void listsOfSimilarLengthShareTheirSql() throws SQLException {
+        String five = StatementPreparer.parameterize(
+                "x IN (__TYPED__LIST::VARCHAR::[\"a\",\"b\",\"c\",\"d\",\"e\"]__TYPED__)", true, new ArrayList<>());
+        String eight = StatementPreparer.parameterize(
+                "x IN (__TYPED__LIST::VARCHAR::[\"a\",\"b\",\"c\",\"d\",\"e\",\"f\",\"g\",\"h\"]__TYPED__)", true, new ArrayList<>());
+        assertEquals("x IN (?, ?, ?, ?, ?, ?, ?, ?)", five);
+        assertEquals(five, eight);
+    }
+
+    @Test
+    public void nullListElementsAreBoundAsTypedNulls() throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StatementPreparer.parameterize("x IN (__TYPED__LIST::BIGINT::[7,null]__TYPED__)", true, params);
+        assertEquals(7L, params.get(0));
+        assertEquals(java.sql.Types.BIGINT, ((StatementPreparer.NullParameter) params.get(1)).sqlType);
+    }
+
+    @Test
+    public void emptyAndLongListsBecomeOneArrayParameter() throws SQLException {
+        List<Object> empty = new ArrayList<>();
+        assertEquals("x IN (SELECT * FROM UNNEST(CAST(? AS INTEGER ARRAY)))",
+                StatementPreparer.parameterize("x IN (__TYPED__LIST::INTEGER::[]__TYPED__)", true, empty));
+        assertEquals(1, empty.size());
+
+        StringBuilder values = new StringBuilder("[0");
+        for (int i = 1; i <= StatementPreparer.MAX_EXPANDED_LIST; i++) {
+            values.append(',').append(i);
+        }
+        List<Object> longList = new ArrayList<>();
+        assertEquals("x IN (SELECT * FROM UNNEST(CAST(? AS INTEGER ARRAY)))",
+                StatementPreparer.parameterize("x IN (__TYPED__LIST::INTEGER::" + values + "]__TYPED__)", true, longList));
+        assertEquals(1, longList.size());
+    }
+
+    @Test
+    public void malformedListsAreRejected() {
+        assertThrows(SQLException.class, () -> StatementPreparer.parameterize(
+                "x IN (__TYPED__LIST::FLOAT::[1]__TYPED__)", true, new ArrayList<>()));
+        assertThrows(SQLException.class, () -> StatementPreparer.parameterize(
+                "x IN (__TYPED__LIST::INTEGER::[\"a\"]__TYPED__)", true, new ArrayList<>()));
+        assertThrows(SQLException.class, () -> StatementPreparer.parameterize(
+                "x IN (__TYPED__LIST::INTEGER::1__TYPED__)", true, new ArrayList<>()));
+    }
+}
@@ -0,0 +1,76 @@
+package com.hasura;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableFilterTest {
+
+    @Test
+    public void noPatternsSelectEverything() {
+        assertSame(TableFilter.ALL, TableFilter.of(null));
+        assertSame(TableFilter.ALL, TableFilter.of(new String[0]));
+        assertTrue(TableFilter.ALL.matchesSchema("sales"));
+        assertTrue(TableFilter.ALL.matchesAllTables("sales"));
+        assertTrue(TableFilter.ALL.matches(null, "orders"));
+    }
+
+    @Test
+    public void schemaPatternSelectsEveryTableOfTheSchema() {
+        TableFilter filter = TableFilter.of(new String[]{"sales"});
+
+        assertTrue(filter.matchesSchema("sales"));
+        assertTrue(filter.matchesAllTables("sales"));
+        assertTrue(filter.matches("sales", "orders"));
+        assertFalse(filter.matchesSchema("hr"));
+        assertFalse(filter.matches("hr", "orders"));
+    }
+
+    @Test
+    public void tablePatternSelectsOnlyMatchingTables() {
+        TableFilter filter = TableFilter.of(new String[]{"sales.order*"});
+
+        assertTrue(filter.matchesSchema("sales"));
+        assertFalse(filter.matchesAllTables("sales"));
+        assertTrue(filter.matches("sales", "orders"));
+        assertTrue(filter.matches("sales", "order_lines"));
+        assertFalse(filter.matches("sales", "customers"));
+    }
+
+    @Test
+    public void globsMatchRunsAndSingleCharacters() {
+        TableFilter filter = TableFilter.of(new String[]{"s?les.*", "h*"});
+
+        assertTrue(filter.matches("sales", "anything"));
+        assertTrue(filter.matches("soles", ""));
+        assertFalse(filter.matches("saales", "orders"));
+        assertTrue(filter.matches("hr", "employees"));
+        assertTrue(filter.matchesAllTables("human_resources"));
+    }
+
+    @Test
+    public void otherCharactersMatchLiterallyAndCaseSensitively() {
+        TableFilter filter = TableFilter.of(new String[]{"a+b.t[1]"});
+
+        assertTrue(filter.matches("a+b", "t[1]"));
+        assertFalse(filter.matches("aab", "t1"));
+        assertFalse(filter.matches("A+B", "t[1]"));
+    }
+
+    @Test
+    public void onlyTheFirstDotSeparatesSchemaAndTable() {
+        TableFilter filter = TableFilter.of(new String[]{"sales.orders.2024"});
+
+        assertTrue(filter.matches("sales", "orders.2024"));
+        assertFalse(filter.matches("sales.orders", "2024"));
+    }
+
+    @Test
+    public void nullSchemaMatchesAnEmptyPattern() {
+        TableFilter filter = TableFilter.of(new String[]{".orders"});
+
+        assertTrue(filter.matchesSchema(null));
+        assertTrue(filter.matches(null, "orders"));
+        assertFalse(filter.matches("sales", "orders"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.hasura;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TemporalLiteralsTest {
+
+    @Test
+    public void classifiesDatesAndTimestamps() {
+        assertEquals(TemporalLiterals.Shape.DATE, TemporalLiterals.classify("2024-01-31"));
+        assertEquals(TemporalLiterals.Shape.LOCAL_PARSEABLE, TemporalLiterals.classify("2024-01-31T10:15"));
+        assertEquals(TemporalLiterals.Shape.LOCAL_PARSEABLE, TemporalLiterals.classify("2024-01-31T10:15:30.123"));
+        assertEquals(TemporalLiterals.Shape.ZONED_PARSEABLE, TemporalLiterals.classify("2024-01-31T10:15:30Z"));
+        assertEquals(TemporalLiterals.Shape.ZONED_PARSEABLE, TemporalLiterals.classify("2024-01-31T10:15:30+05:00"));
+        assertEquals(TemporalLiterals.Shape.ZONED_PARSEABLE, TemporalLiterals.classify("2024-01-31T10:15:30-0500"));
+    }
+
+    @Test
+    public void classifiesOtherShapesAsOther() {
+        assertEquals(TemporalLiterals.Shape.OTHER, TemporalLiterals.classify("5551234567"));
+        assertEquals(TemporalLiterals.Shape.OTHER, TemporalLiterals.classify("2024-1-31"));
+        assertEquals(TemporalLiterals.Shape.OTHER, TemporalLiterals.classify("2024-01-31 10:15:30"));
+        assertEquals(TemporalLiterals.Shape.OTHER, TemporalLiterals.classify("2024-01-31T10:15:30+05"));
+        assertEquals(TemporalLiterals.Shape.OTHER, TemporalLiterals.classify("2024-01-31x"));
+        assertEquals(TemporalLiterals.Shape.OTHER, TemporalLiterals.classify(""));
+    }
+
+    @Test
+    public void convertsParseableLiterals() {
+        assertEquals(Date.valueOf("2024-01-31"), TemporalLiterals.convert("2024-01-31"));
+        assertEquals(Timestamp.from(Instant.parse("2024-01-31T10:15:30Z")),
+                TemporalLiterals.convert("2024-01-31T10:15:30Z"));
+        assertEquals(Timestamp.from(Instant.parse("2024-01-31T05:15:30Z")),
+                TemporalLiterals.convert("2024-01-31T10:15:30+05:00"));
+        assertEquals(Timestamp.from(Instant.parse("2024-01-31T10:15:00Z")),
+                TemporalLiterals.convert("2024-01-31T10:15"));
+    }
+
+    @Test
+    public void convertsPrefixedLiterals() {
+        assertEquals(Date.valueOf("2024-01-31"), TemporalLiterals.convert("DATE::2024-01-31"));
+        assertEquals(Timestamp.from(Instant.parse("2024-01-31T10:15:30Z")),
+                TemporalLiterals.convert("TIMESTAMP::2024-01-31T10:15:30Z"));
+        assertEquals(Timestamp.from(Instant.parse("1994-11-06T08:49:37Z")),
+                TemporalLiterals.convert("TIMESTAMP::Sun, 6 Nov 1994 08:49:37 GMT"));
+    }
+
+    @Test
+    public void leavesOtherStringsUncached() {
+        long cached = TemporalLiterals.cachedLiterals();
+
+        assertEquals("5551234567", TemporalLiterals.convert("5551234567"));
+        assertEquals("12345678901234567890", TemporalLiterals.convert("12345678901234567890"));
+        assertEquals("2024-01-31 10:15:30", TemporalLiterals.convert("2024-01-31 10:15:30"));
+
+        assertEquals(cached, TemporalLiterals.cachedLiterals());
+    }
+
+    @Test
+    public void returnsTheLiteralWhenATemporalShapeDoesNotConvert() {
+        assertEquals("2024-13-01", TemporalLiterals.convert("2024-13-01"));
+        assertEquals("DATE::tomorrow", TemporalLiterals.convert("DATE::tomorrow"));
+    }
+
+    @Test
+    public void returnsAFreshValueOnEveryCall() {
+        Object first = TemporalLiterals.convert("2024-02-29T00:00:00Z");
+        ((Timestamp) first).setTime(0);
+
+        assertEquals(Timestamp.from(Instant.parse("2024-02-29T00:00:00Z")),
+                TemporalLiterals.convert("2024-02-29T00:00:00Z"));
+    }
+}
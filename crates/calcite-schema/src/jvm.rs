@@ -113,6 +113,8 @@ pub fn init_jvm(calcite_configuration: &ParsedConfiguration, should_initialize_o
         let log_level = env::var("LOG_LEVEL").unwrap_or("".to_string());
         let log4j_configuration_file = env::var("LOG4J_CONFIGURATION_FILE")
             .unwrap_or("classpath:log4j2-config.xml".to_string());
+        let cds_archive = env::var("CALCITE_CDS_ARCHIVE")
+            .unwrap_or("/calcite-rs-jni/jni/target/calcite-rs-jni.jsa".into());
         let expanded_paths: String = jar_paths.join(":");
         let mut jvm_args = InitArgsBuilder::new()
             .version(JNIVersion::V8)
@@ -228,6 +230,16 @@ pub fn init_jvm(calcite_configuration: &ParsedConfiguration, should_initialize_o
                 format!("-DLOG_LEVEL={}", log_level)
             );
         }
+        // An AppCDS archive recorded by calcite-rs-jni/jni/cds/create-cds-archive.sh.
+        // The JVM ignores it if it does not match this JVM and class path.
+        if !cds_archive.is_empty() && fs::metadata(&cds_archive).is_ok() {
+            jvm_args = jvm_args.option(format!("-XX:SharedArchiveFile={}", cds_archive));
+            event!(
+                Level::DEBUG,
+                "Added {} to JVM",
+                format!("-XX:SharedArchiveFile={}", cds_archive)
+            );
+        }
         if !expanded_paths.is_empty() {
             jvm_args = jvm_args.option(format!("-Djava.class.path={}", &expanded_paths));
             event!(
@@ -265,5 +277,7 @@ fn get_jar_files(folder_path: &str) -> Vec<String> {
         }
     }
 
+    // A stable order keeps the class path identical between runs, as class data sharing requires.
+    jar_paths.sort();
     jar_paths
 }